@@ -0,0 +1,129 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package io.temporal.samples.moneytransfer.dataconverter;
+
+import io.temporal.api.common.v1.Payloads;
+import io.temporal.common.converter.CodecDataConverter;
+import io.temporal.common.converter.DataConverter;
+import io.temporal.common.converter.DefaultDataConverter;
+import io.temporal.payload.codec.PayloadCodec;
+import io.temporal.samples.moneytransfer.dataclasses.ChargeResponseObj;
+import io.temporal.samples.moneytransfer.dataclasses.ExecutionScenarioObj;
+import io.temporal.samples.moneytransfer.dataclasses.ResultObj;
+import io.temporal.samples.moneytransfer.dataclasses.StateObj;
+import io.temporal.samples.moneytransfer.dataclasses.WorkflowParameterObj;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Encode/decode throughput of the data converter stack used by the workers and clients, with and
+ * without {@link CompressionCodec} and {@link CryptCodec}. Run with {@code ./gradlew :core:jmh};
+ * the gc profiler configured in core/build.gradle reports the allocation rate per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DataConverterBenchmark {
+
+  @Param({"WorkflowParameterObj", "StateObj", "ResultObj", "Large64KB"})
+  public String payload;
+
+  @Param({"none", "crypt", "zlib", "zlib+crypt"})
+  public String codec;
+
+  private DataConverter dataConverter;
+  private Object value;
+  private Class<?> valueType;
+  private Optional<Payloads> encoded;
+
+  @Setup
+  public void setup() {
+    // same ordering as TemporalClient: codecs encode last to first, compressing before encrypting
+    List<PayloadCodec> codecs = new ArrayList<>();
+    if (codec.contains("crypt")) {
+      codecs.add(new CryptCodec());
+    }
+    if (codec.contains("zlib")) {
+      codecs.add(new CompressionCodec(1024));
+    }
+    dataConverter =
+        codecs.isEmpty()
+            ? DefaultDataConverter.newDefaultInstance()
+            : new CodecDataConverter(
+                DefaultDataConverter.newDefaultInstance(),
+                codecs,
+                true /* encode failure attributes */);
+
+    value = newValue(payload);
+    valueType = value.getClass();
+    encoded = dataConverter.toPayloads(value);
+  }
+
+  @Benchmark
+  public Optional<Payloads> encode() {
+    return dataConverter.toPayloads(value);
+  }
+
+  @Benchmark
+  public Object decode() {
+    return dataConverter.fromPayloads(0, encoded, valueType, valueType);
+  }
+
+  private static Object newValue(String payload) {
+    switch (payload) {
+      case "WorkflowParameterObj":
+        return new WorkflowParameterObj(4500, ExecutionScenarioObj.HAPPY_PATH);
+      case "StateObj":
+        return new StateObj(60, "running", "", new ChargeResponseObj("example-charge-id"), 30);
+      case "ResultObj":
+        return new ResultObj(new ChargeResponseObj("example-charge-id"));
+      case "Large64KB":
+        return newLargeValue(64 * 1024);
+      default:
+        throw new IllegalArgumentException("Unknown payload: " + payload);
+    }
+  }
+
+  // JSON-like text with a fixed seed, so every run encodes the same bytes
+  private static String newLargeValue(int size) {
+    Random random = new Random(42);
+    StringBuilder builder = new StringBuilder(size);
+    while (builder.length() < size) {
+      builder
+          .append("{\"chargeId\":\"")
+          .append(Long.toHexString(random.nextLong()))
+          .append("\",\"amount\":")
+          .append(random.nextInt(100000))
+          .append("},");
+    }
+    return builder.substring(0, size);
+  }
+}
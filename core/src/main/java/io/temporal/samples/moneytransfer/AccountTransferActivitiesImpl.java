@@ -19,22 +19,46 @@
 
 package io.temporal.samples.moneytransfer;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
 import io.temporal.activity.Activity;
 import io.temporal.activity.ActivityExecutionContext;
 import io.temporal.activity.ActivityInfo;
+import io.temporal.client.ActivityCompletionClient;
 import io.temporal.samples.moneytransfer.dataclasses.ChargeResponseObj;
 import io.temporal.samples.moneytransfer.dataclasses.ExecutionScenarioObj;
 import io.temporal.samples.moneytransfer.web.ServerInfo;
-import java.io.IOException;
-import okhttp3.OkHttpClient;
-import okhttp3.Request;
-import okhttp3.Response;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class AccountTransferActivitiesImpl implements AccountTransferActivities {
   private static final Logger log = LoggerFactory.getLogger(AccountTransferActivitiesImpl.class);
 
+  // when set, bank API calls complete the activity from the HTTP callback
+  private final ActivityCompletionClient completionClient;
+
+  // activities handed to the completion client that have not completed yet
+  private static final AtomicInteger pendingCompletions =
+      Metrics.getRegistry().gauge("moneytransfer.activity.async.pending", new AtomicInteger());
+
+  // results the completion client failed to report, those activities time out instead
+  private static final Counter completionFailures =
+      Metrics.getRegistry().counter("moneytransfer.activity.async.completion.failures");
+
+  public AccountTransferActivitiesImpl() {
+    this(null);
+  }
+
+  public AccountTransferActivitiesImpl(ActivityCompletionClient completionClient) {
+    this.completionClient = completionClient;
+  }
+
   @Override
   public Boolean validate(ExecutionScenarioObj scenario) {
     log.info("\n\nAPI /validate\n");
@@ -44,11 +68,7 @@ public class AccountTransferActivitiesImpl implements AccountTransferActivities
     }
 
     if (scenario == ExecutionScenarioObj.STRESS_TEST) {
-      ActivityExecutionContext ctx = Activity.getExecutionContext();
-      ActivityInfo info = ctx.getInfo();
-      if (info.getAttempt() <= 1) {
-        stressCpuAndMemory(50 * 1024 * 1024); // 50 MB in bytes
-      }
+      stressCpuAndMemory(Activity.getExecutionContext(), 50 * 1024 * 1024); // 50 MB in bytes
     }
     return true;
   }
@@ -66,7 +86,18 @@ public class AccountTransferActivitiesImpl implements AccountTransferActivities
         log.info("\n*** Activity Attempt: #" + info.getAttempt() + "***\n");
         int delaySeconds = 7;
         log.info("\n\n/API/simulateDelay Seconds" + delaySeconds + "\n");
-        simulateDelay(delaySeconds);
+
+        if (completionClient != null) {
+          completeAsync(
+              ctx,
+              scenario,
+              System.nanoTime(),
+              simulateDelayAsync(delaySeconds, info.getStartToCloseTimeout())
+                  .thenApply(body -> "SUCCESS"));
+          return null; // ignored, the result is reported through the completion client
+        }
+
+        simulateDelay(delaySeconds, info.getStartToCloseTimeout());
       }
     }
 
@@ -97,17 +128,67 @@ public class AccountTransferActivitiesImpl implements AccountTransferActivities
     return true;
   }
 
-  private static String simulateDelay(int seconds) {
-    String url = ServerInfo.getWebServerURL() + "/simulateDelay?s=" + seconds;
-    log.info("\n\n/API/simulateDelay URL: " + url + "\n");
-    Request request = new Request.Builder().url(url).build();
-    try (Response response = new OkHttpClient().newCall(request).execute()) {
-      return response.body().string();
-    } catch (IOException e) {
+  // Frees the activity slot and thread now and reports the result once the future completes, so
+  // outstanding bank calls are only bounded by the HTTP client's dispatcher. The latency until
+  // then is timed here, since ActivityMetricsInterceptor only sees the hand-off.
+  private <R> void completeAsync(
+      ActivityExecutionContext ctx,
+      ExecutionScenarioObj scenario,
+      long startNanos,
+      CompletableFuture<R> result) {
+    byte[] taskToken = ctx.getTaskToken();
+    String activityId = ctx.getInfo().getActivityId();
+    String activityType = ctx.getInfo().getActivityType();
+    ctx.doNotCompleteOnReturn();
+    pendingCompletions.incrementAndGet();
+    result.whenComplete(
+        (value, error) -> {
+          pendingCompletions.decrementAndGet();
+          Timer.builder("moneytransfer.activity.async")
+              .tag("activity", activityType)
+              .tag("scenario", scenario.name())
+              .tag("outcome", error == null ? "success" : "failure")
+              .publishPercentileHistogram()
+              .register(Metrics.getRegistry())
+              .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+          try {
+            if (error == null) {
+              completionClient.complete(taskToken, value);
+            } else {
+              Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+              completionClient.completeExceptionally(
+                  taskToken,
+                  cause instanceof Exception ? (Exception) cause : new RuntimeException(cause));
+            }
+          } catch (RuntimeException e) {
+            // e.g. the server is unreachable or the activity already timed out, nothing else
+            // would report it and the activity would just time out
+            completionFailures.increment();
+            log.warn("Failed to complete activity " + activityId, e);
+          }
+        });
+  }
+
+  // The call is abandoned once the activity would have timed out anyway. withdraw is a short
+  // activity without a heartbeat timeout, so it doesn't heartbeat while it waits: a lost worker is
+  // detected by the start-to-close timeout, which the call's own timeout matches.
+  private static String simulateDelay(int seconds, Duration timeout) {
+    try {
+      return simulateDelayAsync(seconds, timeout).get();
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
       throw new RuntimeException(e);
     }
   }
 
+  private static CompletableFuture<String> simulateDelayAsync(int seconds, Duration timeout) {
+    String url = ServerInfo.getWebServerURL() + "/simulateDelay?s=" + seconds;
+    log.info("\n\n/API/simulateDelay URL: " + url + "\n");
+    return BankingApiClient.getAsync(url, timeout);
+  }
+
   // InvalidAccountException
   public static class InvalidAccountException extends RuntimeException {
     public InvalidAccountException(String message) {
@@ -115,15 +196,21 @@ public class AccountTransferActivitiesImpl implements AccountTransferActivities
     }
   }
 
-  public static void stressCpuAndMemory(int sizeInBytes) {
+  // heartbeats through ctx, so it can only run inside an activity
+  private static void stressCpuAndMemory(ActivityExecutionContext ctx, int sizeInBytes) {
     // Allocate a byte array of the specified size
     byte[] memoryChunk = new byte[sizeInBytes];
 
-    long startTime = System.currentTimeMillis();
+    // milliseconds of stress already done by earlier attempts
+    long completed = ctx.getHeartbeatDetails(Long.class).orElse(0L);
+    long startTime = System.currentTimeMillis() - completed;
     long duration = 30 * 1000; // 30 seconds in milliseconds
 
     // Perform CPU-intensive task for approximately 30 seconds
     while (System.currentTimeMillis() - startTime < duration) {
+      // checkpoint progress, throws if the activity timed out or was cancelled
+      ctx.heartbeat(System.currentTimeMillis() - startTime);
+
       // Fill the array with some data to simulate memory usage
       for (int i = 0; i < memoryChunk.length; i++) {
         memoryChunk[i] = (byte) (i % 256);
@@ -19,12 +19,17 @@
 
 package io.temporal.samples.moneytransfer;
 
+import io.temporal.client.WorkflowClient;
+import io.temporal.common.interceptors.WorkerInterceptor;
 import io.temporal.samples.moneytransfer.web.ServerInfo;
 import io.temporal.worker.Worker;
 import io.temporal.worker.WorkerFactory;
 import io.temporal.worker.WorkerOptions;
-import io.temporal.worker.tuning.ResourceBasedControllerOptions;
-import io.temporal.worker.tuning.ResourceBasedTuner;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 
 public class AccountTransferWorker {
 
@@ -33,23 +38,104 @@ public class AccountTransferWorker {
 
     final String TASK_QUEUE = ServerInfo.getTaskqueue();
 
+    Tracing.init("moneytransfer-worker");
+
+    boolean virtualThreads = ServerInfo.isVirtualThreads();
+    if (virtualThreads && !isVirtualThreadsSupported()) {
+      throw new IllegalStateException(
+          "WORKER_VIRTUAL_THREADS requires Java 21, run with ./gradlew -Pjava21");
+    }
+
+    // slot tuner, pollers and sticky cache come from WORKER_* settings, see WorkerTuning
     WorkerOptions workerOptions =
-        WorkerOptions.newBuilder()
-            .setWorkerTuner(
-                ResourceBasedTuner.newBuilder()
-                    .setControllerOptions(
-                        ResourceBasedControllerOptions.newBuilder(0.7, 0.7).build())
-                    .build())
-            .build();
+        WorkerTuning.newWorkerOptionsBuilder().setUsingVirtualThreads(virtualThreads).build();
 
     // worker factory that can be used to create workers for specific task queues
-    WorkerFactory factory = WorkerFactory.newInstance(TemporalClient.get());
-    Worker workerForCommonTaskQueue = factory.newWorker(TASK_QUEUE, workerOptions);
-    workerForCommonTaskQueue.registerWorkflowImplementationTypes(AccountTransferWorkflowImpl.class);
-    AccountTransferActivities accountTransferActivities = new AccountTransferActivitiesImpl();
-    workerForCommonTaskQueue.registerActivitiesImplementations(accountTransferActivities);
+    WorkflowClient client = TemporalClient.get();
+    // tracing first, so the activity timers are measured inside the activity span
+    List<WorkerInterceptor> interceptors =
+        new ArrayList<>(Arrays.asList(Tracing.getWorkerInterceptors()));
+    interceptors.add(new ActivityMetricsInterceptor(Metrics.getRegistry()));
+    WorkerFactory factory =
+        WorkerFactory.newInstance(
+            client,
+            WorkerTuning.newWorkerFactoryOptionsBuilder()
+                .setWorkerInterceptors(interceptors.toArray(new WorkerInterceptor[0]))
+                .setUsingVirtualWorkflowThreads(virtualThreads)
+                .build());
+    AccountTransferActivities accountTransferActivities =
+        ServerInfo.isAsyncActivityCompletion()
+            ? new AccountTransferActivitiesImpl(client.newActivityCompletionClient())
+            : new AccountTransferActivitiesImpl();
+
+    // WORKER_ROLE lets workflow, activity and heavy activity pools be deployed and scaled apart
+    String role = ServerInfo.getWorkerRole();
+    Set<String> activityTaskQueues =
+        getActivityTaskQueues(
+            role,
+            TASK_QUEUE,
+            ServerInfo.getActivityTaskqueue(),
+            ServerInfo.getHeavyActivityTaskqueue());
+    boolean pollsWorkflows = "all".equals(role) || "workflow".equals(role);
+    if (pollsWorkflows) {
+      Worker workflowWorker = factory.newWorker(TASK_QUEUE, workerOptions);
+      workflowWorker.registerWorkflowImplementationTypes(
+          AccountTransferWorkflowImpl.class, BatchTransferWorkflowImpl.class);
+      // local activities run on the workflow worker, and any transfer may ask for one
+      activityTaskQueues.add(TASK_QUEUE);
+    }
+    for (String taskQueue : activityTaskQueues) {
+      Worker activityWorker =
+          pollsWorkflows && taskQueue.equals(TASK_QUEUE)
+              ? factory.getWorker(TASK_QUEUE)
+              : factory.newWorker(taskQueue, workerOptions);
+      activityWorker.registerActivitiesImplementations(accountTransferActivities);
+    }
+    if (ServerInfo.getWorkerMetricsPort() > 0) {
+      int metricsPort = Metrics.startScrapeServer(ServerInfo.getWorkerMetricsPort());
+      System.out.println("Worker metrics at http://localhost:" + metricsPort + "/metrics");
+    }
+
     // Start all workers created by this factory.
     factory.start();
-    System.out.println("Worker started for task queue: " + TASK_QUEUE);
+    System.out.println(
+        "Worker started as "
+            + role
+            + (pollsWorkflows ? ", workflow task queue: " + TASK_QUEUE : "")
+            + (activityTaskQueues.isEmpty() ? "" : ", activity task queues: " + activityTaskQueues)
+            + (virtualThreads ? " (virtual threads)" : ""));
+  }
+
+  // Activity task queues polled by a worker in the given role. Empty activity and heavy queues
+  // fall back to the workflow and activity queue respectively, so by default everything shares
+  // the one task queue.
+  static Set<String> getActivityTaskQueues(
+      String role, String workflowTaskQueue, String activityTaskQueue, String heavyTaskQueue) {
+    String activityQueue = activityTaskQueue.isEmpty() ? workflowTaskQueue : activityTaskQueue;
+    String heavyQueue = heavyTaskQueue.isEmpty() ? activityQueue : heavyTaskQueue;
+    Set<String> taskQueues = new LinkedHashSet<>();
+    switch (role) {
+      case "all":
+        taskQueues.add(activityQueue);
+        taskQueues.add(heavyQueue);
+        break;
+      case "workflow":
+        break;
+      case "activity":
+        taskQueues.add(activityQueue);
+        break;
+      case "heavy-activity":
+        taskQueues.add(heavyQueue);
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown WORKER_ROLE: " + role);
+    }
+    return taskQueues;
+  }
+
+  static boolean isVirtualThreadsSupported() {
+    // "1.8" before Java 9, then "9", "10", ...
+    String version = System.getProperty("java.specification.version");
+    return !version.startsWith("1.") && Integer.parseInt(version) >= 21;
   }
 }
@@ -20,6 +20,7 @@
 package io.temporal.samples.moneytransfer;
 
 import io.temporal.activity.ActivityOptions;
+import io.temporal.activity.LocalActivityOptions;
 import io.temporal.common.RetryOptions;
 import io.temporal.common.SearchAttributeKey;
 import io.temporal.failure.ActivityFailure;
@@ -48,9 +49,30 @@ public class AccountTransferWorkflowImpl implements AccountTransferWorkflow {
                   .build())
           .build();
 
-  // activity stub
-  private final AccountTransferActivities accountTransferActivities =
-      Workflow.newActivityStub(AccountTransferActivities.class, options);
+  // validate may stress the worker for 30s, it heartbeats its progress so a lost worker is
+  // detected within the heartbeat timeout and the retry resumes from the last checkpoint
+  private final ActivityOptions longRunningOptions =
+      ActivityOptions.newBuilder(options)
+          .setStartToCloseTimeout(Duration.ofSeconds(60))
+          .setHeartbeatTimeout(Duration.ofSeconds(3))
+          .build();
+
+  // activity stubs, created in the constructor once the task queues are known
+  private final AccountTransferActivities accountTransferActivities;
+
+  private final AccountTransferActivities longRunningActivities;
+
+  // the STRESS_TEST validate, routed to its own pool so it can't starve regular activities
+  private final AccountTransferActivities heavyActivities;
+
+  // runs validate in the worker without a task queue round trip, recorded as a single marker
+  private final AccountTransferActivities localActivities =
+      Workflow.newLocalActivityStub(
+          AccountTransferActivities.class,
+          LocalActivityOptions.newBuilder()
+              .setStartToCloseTimeout(Duration.ofSeconds(5))
+              .setRetryOptions(options.getRetryOptions())
+              .build());
 
   // these variables are reflected in the UI
   private int progressPercentage = 10;
@@ -64,6 +86,30 @@ public class AccountTransferWorkflowImpl implements AccountTransferWorkflow {
 
   private boolean approved = false;
 
+  public AccountTransferWorkflowImpl() {
+    this(ServerInfo.getActivityTaskqueue(), ServerInfo.getHeavyActivityTaskqueue());
+  }
+
+  // an empty task queue keeps those activities on the workflow's task queue
+  public AccountTransferWorkflowImpl(String activityTaskQueue, String heavyActivityTaskQueue) {
+    this.accountTransferActivities =
+        Workflow.newActivityStub(
+            AccountTransferActivities.class, withTaskQueue(options, activityTaskQueue));
+    this.longRunningActivities =
+        Workflow.newActivityStub(
+            AccountTransferActivities.class, withTaskQueue(longRunningOptions, activityTaskQueue));
+    this.heavyActivities =
+        Workflow.newActivityStub(
+            AccountTransferActivities.class,
+            withTaskQueue(longRunningOptions, heavyActivityTaskQueue));
+  }
+
+  static ActivityOptions withTaskQueue(ActivityOptions options, String taskQueue) {
+    return taskQueue.isEmpty()
+        ? options
+        : ActivityOptions.newBuilder(options).setTaskQueue(taskQueue).build();
+  }
+
   // workflow
   @Override
   public ResultObj transfer(WorkflowParameterObj params) {
@@ -76,8 +122,18 @@ public class AccountTransferWorkflowImpl implements AccountTransferWorkflow {
     progressPercentage = 50;
     transferState = "running";
 
-    // The validate activity will return false if approval is required
-    if (!accountTransferActivities.validate(params.getScenario())) {
+    // The validate activity will return false if approval is required. Whether it runs as a
+    // local activity comes from the input, never from the worker's environment, so a replay on
+    // a differently configured worker schedules the same commands.
+    AccountTransferActivities validator;
+    if (params.getScenario() == ExecutionScenarioObj.STRESS_TEST) {
+      validator = heavyActivities;
+    } else if (params.isLocalValidate()) {
+      validator = localActivities;
+    } else {
+      validator = longRunningActivities;
+    }
+    if (!validator.validate(params.getScenario())) {
       log.info(
           "\n\nWaiting on 'approveTransfer' Signal or Update for workflow ID: "
               + Workflow.getInfo().getWorkflowId()
@@ -0,0 +1,85 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package io.temporal.samples.moneytransfer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.temporal.activity.ActivityExecutionContext;
+import io.temporal.common.interceptors.ActivityInboundCallsInterceptor;
+import io.temporal.common.interceptors.ActivityInboundCallsInterceptorBase;
+import io.temporal.common.interceptors.WorkerInterceptorBase;
+import io.temporal.samples.moneytransfer.dataclasses.ExecutionScenarioObj;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every activity execution by activity type, {@link ExecutionScenarioObj} argument and
+ * outcome. Activities completed asynchronously are recorded with outcome {@code async}, timed
+ * until they hand off to the completion client; their time until the result is known is recorded
+ * as {@code moneytransfer.activity.async} when they complete.
+ */
+public class ActivityMetricsInterceptor extends WorkerInterceptorBase {
+
+  private final MeterRegistry registry;
+
+  public ActivityMetricsInterceptor(MeterRegistry registry) {
+    this.registry = registry;
+  }
+
+  @Override
+  public ActivityInboundCallsInterceptor interceptActivity(ActivityInboundCallsInterceptor next) {
+    return new ActivityInboundCallsInterceptorBase(next) {
+      private ActivityExecutionContext context;
+
+      @Override
+      public void init(ActivityExecutionContext context) {
+        this.context = context;
+        super.init(context);
+      }
+
+      @Override
+      public ActivityOutput execute(ActivityInput input) {
+        long start = System.nanoTime();
+        String outcome = "failure";
+        try {
+          ActivityOutput output = super.execute(input);
+          outcome = context.isDoNotCompleteOnReturn() ? "async" : "success";
+          return output;
+        } finally {
+          Timer.builder("moneytransfer.activity")
+              .tag("activity", context.getInfo().getActivityType())
+              .tag("scenario", getScenario(input.getArguments()))
+              .tag("outcome", outcome)
+              .publishPercentileHistogram()
+              .register(registry)
+              .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+      }
+    };
+  }
+
+  private static String getScenario(Object[] arguments) {
+    for (Object argument : arguments) {
+      if (argument instanceof ExecutionScenarioObj) {
+        return ((ExecutionScenarioObj) argument).name();
+      }
+    }
+    return "none";
+  }
+}
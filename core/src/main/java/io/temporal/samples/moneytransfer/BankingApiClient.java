@@ -0,0 +1,141 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package io.temporal.samples.moneytransfer;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+import io.temporal.samples.moneytransfer.web.ServerInfo;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * HTTP client for the (simulated) banking API, shared by all activities in the worker so calls
+ * reuse pooled connections and one set of dispatcher threads.
+ */
+public class BankingApiClient {
+
+  private static final OkHttpClient httpClient =
+      new OkHttpClient.Builder()
+          .dispatcher(newDispatcher())
+          .connectionPool(
+              new ConnectionPool(ServerInfo.getHttpMaxIdleConnections(), 5, TimeUnit.MINUTES))
+          .connectTimeout(ServerInfo.getHttpConnectTimeoutMillis(), TimeUnit.MILLISECONDS)
+          .build();
+
+  // calls sent and not yet answered, e.g. withdraw calls waiting out API_DOWNTIME
+  private static final AtomicInteger inFlightCalls =
+      Metrics.getRegistry().gauge("moneytransfer.bank.calls.inflight", new AtomicInteger());
+
+  public static int getInFlightCalls() {
+    return inFlightCalls.get();
+  }
+
+  /**
+   * Calls the API and returns immediately, the response body is read on an OkHttp thread. That
+   * thread is held for the whole call, so this frees the caller's thread but not a thread per call.
+   *
+   * @param timeout for the whole call, usually the activity's start-to-close timeout; zero means no
+   *     timeout
+   */
+  public static CompletableFuture<String> getAsync(String url, Duration timeout) {
+    CompletableFuture<String> result = new CompletableFuture<>();
+    // started on the caller's thread, so it is a child of the activity's span
+    Span span = startCall(url);
+    newCall(url, timeout, span)
+        .enqueue(
+            new Callback() {
+              @Override
+              public void onFailure(Call call, IOException e) {
+                endCall(span, null, e);
+                result.completeExceptionally(e);
+              }
+
+              @Override
+              public void onResponse(Call call, Response response) {
+                try (Response r = response) {
+                  result.complete(endCall(span, getBody(r), null));
+                } catch (IOException e) {
+                  endCall(span, null, e);
+                  result.completeExceptionally(e);
+                }
+              }
+            });
+    return result;
+  }
+
+  // OkHttp 3 does blocking I/O, so every running call holds one dispatcher thread until its
+  // response is read: maxRequests is both the call limit and the thread count. Calls beyond these
+  // limits wait in the dispatcher's queue, not on an activity thread, but the activity's
+  // start-to-close timeout is still running while they wait. Both limits default to the activity
+  // slot count so a worker's activities are not queued behind each other.
+  private static Dispatcher newDispatcher() {
+    Dispatcher dispatcher = new Dispatcher();
+    dispatcher.setMaxRequests(ServerInfo.getHttpMaxRequests());
+    dispatcher.setMaxRequestsPerHost(ServerInfo.getHttpMaxRequestsPerHost());
+    return dispatcher;
+  }
+
+  private static Call newCall(String url, Duration timeout, Span span) {
+    Request.Builder request = new Request.Builder().url(url);
+    Tracing.inject(span, request::header);
+    Call call = httpClient.newCall(request.build());
+    if (!timeout.isZero()) {
+      call.timeout().timeout(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+    return call;
+  }
+
+  // traces the call and counts it as in flight until endCall
+  private static Span startCall(String url) {
+    HttpUrl httpUrl = HttpUrl.get(url);
+    Span span = Tracing.startClientSpan("GET " + httpUrl.encodedPath());
+    span.setAttribute("http.url", url);
+    inFlightCalls.incrementAndGet();
+    return span;
+  }
+
+  private static String endCall(Span span, String body, IOException error) {
+    inFlightCalls.decrementAndGet();
+    if (error != null) {
+      span.recordException(error);
+      span.setStatus(StatusCode.ERROR);
+    }
+    span.end();
+    return body;
+  }
+
+  private static String getBody(Response response) throws IOException {
+    if (!response.isSuccessful()) {
+      throw new IOException("HTTP " + response.code() + " from " + response.request().url());
+    }
+    return response.body().string();
+  }
+}
@@ -0,0 +1,41 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package io.temporal.samples.moneytransfer;
+
+import io.temporal.samples.moneytransfer.dataclasses.BatchProgressObj;
+import io.temporal.samples.moneytransfer.dataclasses.BatchResultObj;
+import io.temporal.samples.moneytransfer.dataclasses.BatchTransferParameterObj;
+import io.temporal.workflow.*;
+
+/**
+ * Settles many transfers, e.g. a payroll run, in one workflow execution.
+ *
+ * <p>The result does not list every transfer: successes are only counted, and only the first 100
+ * failures are returned with their batch index and error. This keeps the result, and the input
+ * carried over when continuing as new, bounded for batches of any size.
+ */
+@WorkflowInterface
+public interface BatchTransferWorkflow {
+  @WorkflowMethod(name = "batchTransferWorkflow")
+  BatchResultObj transfer(BatchTransferParameterObj params);
+
+  @QueryMethod(name = "batchProgress")
+  BatchProgressObj getProgress();
+}
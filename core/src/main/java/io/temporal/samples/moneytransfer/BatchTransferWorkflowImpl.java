@@ -0,0 +1,175 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package io.temporal.samples.moneytransfer;
+
+import io.temporal.activity.ActivityOptions;
+import io.temporal.common.RetryOptions;
+import io.temporal.failure.ActivityFailure;
+import io.temporal.failure.ApplicationFailure;
+import io.temporal.samples.moneytransfer.dataclasses.*;
+import io.temporal.samples.moneytransfer.web.ServerInfo;
+import io.temporal.workflow.Async;
+import io.temporal.workflow.Promise;
+import io.temporal.workflow.Workflow;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class BatchTransferWorkflowImpl implements BatchTransferWorkflow {
+
+  private static final Logger log = LoggerFactory.getLogger(BatchTransferWorkflowImpl.class);
+
+  // transfers settled by one run before continuing as new, keeps each run's history bounded
+  static final int DEFAULT_TRANSFERS_PER_RUN = 500;
+
+  static final int DEFAULT_CONCURRENCY = 10;
+
+  // same retry policy as a single transfer
+  private final ActivityOptions options =
+      ActivityOptions.newBuilder()
+          .setStartToCloseTimeout(Duration.ofSeconds(5))
+          .setRetryOptions(
+              RetryOptions.newBuilder()
+                  .setDoNotRetry(
+                      AccountTransferActivitiesImpl.InvalidAccountException.class.getName())
+                  .build())
+          .build();
+
+  private final AccountTransferActivities accountTransferActivities;
+
+  private final int transfersPerRun;
+
+  // failed transfers kept for the result, later failures are only counted
+  static final int MAX_REPORTED_FAILURES = 100;
+
+  // counts of this and all previous runs, reflected in the progress query
+  private final List<BatchItemResultObj> failures = new ArrayList<>();
+  private int total;
+  private int succeeded;
+  private int failed;
+  private int inFlight;
+
+  public BatchTransferWorkflowImpl() {
+    this(DEFAULT_TRANSFERS_PER_RUN, ServerInfo.getActivityTaskqueue());
+  }
+
+  public BatchTransferWorkflowImpl(int transfersPerRun) {
+    this(transfersPerRun, "");
+  }
+
+  // an empty activityTaskQueue keeps the activities on the workflow's task queue
+  public BatchTransferWorkflowImpl(int transfersPerRun, String activityTaskQueue) {
+    this.transfersPerRun = transfersPerRun;
+    this.accountTransferActivities =
+        Workflow.newActivityStub(
+            AccountTransferActivities.class,
+            AccountTransferWorkflowImpl.withTaskQueue(options, activityTaskQueue));
+  }
+
+  // Transfers in a batch are pre-approved, so validate is not run. Withdraw/deposit of up to
+  // `concurrency` transfers run at once; a failed transfer is recorded and does not fail the batch.
+  @Override
+  public BatchResultObj transfer(BatchTransferParameterObj params) {
+    List<WorkflowParameterObj> transfers = params.getTransfers();
+    // each run only receives the transfers still to settle, so transfers.get(i) is batch item
+    // `offset + i`, and what earlier runs settled is carried as counts instead of results
+    int offset = 0;
+    total = transfers.size();
+    if (params.getProgress() != null) {
+      offset = params.getProgress().getCompleted();
+      total = params.getProgress().getTotal();
+      succeeded = params.getProgress().getSucceeded();
+      failed = params.getProgress().getFailed();
+      failures.addAll(params.getFailures());
+    }
+    int concurrency = params.getConcurrency() > 0 ? params.getConcurrency() : DEFAULT_CONCURRENCY;
+    int count = Math.min(transfers.size(), transfersPerRun);
+
+    List<Promise<BatchItemResultObj>> pending = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      Workflow.await(() -> inFlight < concurrency);
+      inFlight++;
+      pending.add(Async.function(this::settle, offset + i, transfers.get(i)));
+    }
+    Promise.allOf(pending).get();
+
+    if (count < transfers.size()) {
+      log.info(
+          "\n\nSettled " + (offset + count) + " of " + total + " transfers, continuing as new\n\n");
+      Workflow.continueAsNew(
+          new BatchTransferParameterObj(
+              new ArrayList<>(transfers.subList(count, transfers.size())),
+              concurrency,
+              getProgress(),
+              failures));
+    }
+
+    return new BatchResultObj(getProgress(), failures);
+  }
+
+  @Override
+  public BatchProgressObj getProgress() {
+    return new BatchProgressObj(total, succeeded + failed, succeeded, failed);
+  }
+
+  private BatchItemResultObj settle(int index, WorkflowParameterObj transfer) {
+    try {
+      accountTransferActivities.withdraw(transfer.getAmount(), transfer.getScenario());
+    } catch (ActivityFailure e) {
+      return record(new BatchItemResultObj(index, null, getFailureMessage(e)));
+    }
+
+    try {
+      // stable across workflow retries and continue-as-new
+      String idempotencyKey = Workflow.getInfo().getWorkflowId() + "-" + index;
+      ChargeResponseObj charge =
+          accountTransferActivities.deposit(
+              idempotencyKey, transfer.getAmount(), transfer.getScenario());
+      return record(new BatchItemResultObj(index, charge.getChargeId(), null));
+    } catch (ActivityFailure e) {
+      // rollback the withdrawal of this transfer only
+      accountTransferActivities.undoWithdraw(transfer.getAmount());
+      return record(new BatchItemResultObj(index, null, getFailureMessage(e)));
+    }
+  }
+
+  private BatchItemResultObj record(BatchItemResultObj result) {
+    if (result.getError() == null) {
+      succeeded++;
+    } else {
+      failed++;
+      if (failures.size() < MAX_REPORTED_FAILURES) {
+        failures.add(result);
+      }
+    }
+    inFlight--;
+    return result;
+  }
+
+  private static String getFailureMessage(ActivityFailure e) {
+    Throwable cause = e.getCause();
+    if (cause instanceof ApplicationFailure) {
+      return ((ApplicationFailure) cause).getOriginalMessage();
+    }
+    return cause != null ? cause.getMessage() : e.getMessage();
+  }
+}
@@ -0,0 +1,195 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package io.temporal.samples.moneytransfer;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.google.common.hash.Hashing;
+import io.temporal.api.history.v1.History;
+import io.temporal.api.workflow.v1.WorkflowExecutionInfo;
+import io.temporal.common.WorkflowExecutionHistory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Local corpus of closed workflow histories for replay testing.
+ *
+ * <p>Histories are stored as gzipped protobuf {@link History} files named after the SHA-256 of
+ * their content, so identical histories are stored once. {@code index.json} maps run IDs to their
+ * workflow ID, workflow type, close time and content hash. Only closed executions are stored since
+ * the history of a running execution still changes.
+ */
+public class HistoryCorpus {
+  static final String INDEX_FILE = "index.json";
+
+  private static final ObjectMapper mapper =
+      new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+  private final Path directory;
+  // keyed by run ID
+  private final Map<String, Entry> index = new LinkedHashMap<>();
+
+  public HistoryCorpus(Path directory) throws IOException {
+    this.directory = directory;
+    Files.createDirectories(directory);
+
+    Path indexFile = directory.resolve(INDEX_FILE);
+    if (Files.exists(indexFile)) {
+      List<Entry> entries =
+          mapper.readValue(indexFile.toFile(), new TypeReference<List<Entry>>() {});
+      for (Entry entry : entries) {
+        index.put(entry.getRunId(), entry);
+      }
+    }
+  }
+
+  public synchronized boolean contains(String runId) {
+    return index.containsKey(runId);
+  }
+
+  /** Cached history of a run, or null if it is not in the corpus. */
+  public WorkflowExecutionHistory get(String runId) throws IOException {
+    Entry entry;
+    synchronized (this) {
+      entry = index.get(runId);
+    }
+    if (entry == null) {
+      return null;
+    }
+
+    try (InputStream in = new GZIPInputStream(Files.newInputStream(getPath(entry.getSha256())))) {
+      return new WorkflowExecutionHistory(History.parseFrom(in), entry.getWorkflowId());
+    }
+  }
+
+  /** Stores the history of a closed execution, ignored for executions that are still running. */
+  public void put(WorkflowExecutionInfo info, WorkflowExecutionHistory history)
+      throws IOException {
+    if (!info.hasCloseTime()) {
+      return;
+    }
+
+    byte[] data = history.getHistory().toByteArray();
+    String sha256 = Hashing.sha256().hashBytes(data).toString();
+
+    Path path = getPath(sha256);
+    if (!Files.exists(path)) {
+      // write to a temporary file first so a crash never leaves a truncated history behind
+      Path tmp = Files.createTempFile(directory, sha256, ".tmp");
+      try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(tmp))) {
+        out.write(data);
+      }
+      Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    Entry entry =
+        new Entry(
+            info.getExecution().getWorkflowId(),
+            info.getExecution().getRunId(),
+            info.getType().getName(),
+            Instant.ofEpochSecond(info.getCloseTime().getSeconds(), info.getCloseTime().getNanos())
+                .toString(),
+            sha256);
+    synchronized (this) {
+      index.put(entry.getRunId(), entry);
+    }
+  }
+
+  /** Entries ordered by close time, most recent first. */
+  public synchronized List<Entry> getEntries() {
+    return index.values().stream()
+        .sorted(
+            Comparator.comparing((Entry entry) -> Instant.parse(entry.getCloseTime())).reversed())
+        .collect(Collectors.toList());
+  }
+
+  public synchronized void saveIndex() {
+    try {
+      Path tmp = Files.createTempFile(directory, INDEX_FILE, ".tmp");
+      mapper.writeValue(tmp.toFile(), new ArrayList<>(index.values()));
+      Files.move(tmp, directory.resolve(INDEX_FILE), StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private Path getPath(String sha256) {
+    return directory.resolve(sha256 + ".pb.gz");
+  }
+
+  public static class Entry {
+    private final String workflowId;
+    private final String runId;
+    private final String workflowType;
+    private final String closeTime; // ISO-8601
+    private final String sha256;
+
+    @JsonCreator
+    public Entry(
+        @JsonProperty("workflowId") String workflowId,
+        @JsonProperty("runId") String runId,
+        @JsonProperty("workflowType") String workflowType,
+        @JsonProperty("closeTime") String closeTime,
+        @JsonProperty("sha256") String sha256) {
+      this.workflowId = workflowId;
+      this.runId = runId;
+      this.workflowType = workflowType;
+      this.closeTime = closeTime;
+      this.sha256 = sha256;
+    }
+
+    public String getWorkflowId() {
+      return workflowId;
+    }
+
+    public String getRunId() {
+      return runId;
+    }
+
+    public String getWorkflowType() {
+      return workflowType;
+    }
+
+    public String getCloseTime() {
+      return closeTime;
+    }
+
+    public String getSha256() {
+      return sha256;
+    }
+  }
+}
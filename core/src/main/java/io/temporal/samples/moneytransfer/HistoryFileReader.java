@@ -0,0 +1,133 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package io.temporal.samples.moneytransfer;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.temporal.api.history.v1.History;
+import io.temporal.api.history.v1.HistoryEvent;
+import io.temporal.common.WorkflowExecutionHistory;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads workflow histories without loading the whole file into memory first.
+ *
+ * <p>JSON histories (as exported by the Temporal UI or CLI) are parsed a chunk of events at a time,
+ * so only the resulting protobuf history is kept in memory rather than the file contents, a JSON
+ * tree and the protobuf at once. Binary protobuf histories ({@code .pb}, or {@code .pb.gz} as
+ * written by {@link HistoryCorpus}) are parsed directly.
+ */
+public class HistoryFileReader {
+  private static final ObjectMapper mapper = new ObjectMapper();
+
+  private static final int EVENTS_PER_CHUNK = 1000;
+
+  // the index of a HistoryCorpus directory is JSON too, but not a history
+  public static boolean isHistoryFile(Path path) {
+    String name = path.getFileName().toString();
+    if (name.equals(HistoryCorpus.INDEX_FILE)) {
+      return false;
+    }
+    return name.endsWith(".json") || name.endsWith(".pb") || name.endsWith(".pb.gz");
+  }
+
+  public static WorkflowExecutionHistory read(Path path) throws IOException {
+    String name = path.getFileName().toString();
+
+    try (InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+      if (name.endsWith(".pb.gz")) {
+        try (InputStream gzipIn = new GZIPInputStream(in)) {
+          return new WorkflowExecutionHistory(History.parseFrom(gzipIn), name);
+        }
+      }
+      if (name.endsWith(".pb")) {
+        return new WorkflowExecutionHistory(History.parseFrom(in), name);
+      }
+      return new WorkflowExecutionHistory(readJson(in), name);
+    }
+  }
+
+  private static History readJson(InputStream in) throws IOException {
+    History.Builder history = History.newBuilder();
+
+    try (JsonParser parser = mapper.getFactory().createParser(in)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new IOException("Expected a JSON object with an \"events\" array");
+      }
+
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        parser.nextToken();
+
+        if (!"events".equals(field)) {
+          parser.skipChildren();
+          continue;
+        }
+
+        String startedEvent = null;
+        List<String> chunk = new ArrayList<>();
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+          JsonNode event = mapper.readTree(parser);
+          chunk.add(mapper.writeValueAsString(event));
+          if (startedEvent == null) {
+            startedEvent = chunk.get(0);
+          }
+          if (chunk.size() == EVENTS_PER_CHUNK) {
+            mergeEvents(startedEvent, chunk, history);
+            chunk.clear();
+          }
+        }
+        if (!chunk.isEmpty()) {
+          mergeEvents(startedEvent, chunk, history);
+        }
+      }
+    }
+
+    return history.build();
+  }
+
+  // WorkflowExecutionHistory.fromJson converts the short enum names used by the UI
+  // ("WorkflowExecutionStarted"), but only accepts a history that begins with the started event,
+  // so every chunk after the first is parsed with that event in front and then drops it
+  private static void mergeEvents(
+      String startedEvent, List<String> chunk, History.Builder history) {
+    boolean prefixed = history.getEventsCount() > 0;
+    List<String> events = new ArrayList<>(chunk.size() + 1);
+    if (prefixed) {
+      events.add(startedEvent);
+    }
+    events.addAll(chunk);
+
+    List<HistoryEvent> parsed =
+        WorkflowExecutionHistory.fromJson("{\"events\":[" + String.join(",", events) + "]}")
+            .getHistory()
+            .getEventsList();
+    history.addAllEvents(prefixed ? parsed.subList(1, parsed.size()) : parsed);
+  }
+}
@@ -0,0 +1,411 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package io.temporal.samples.moneytransfer;
+
+import io.temporal.client.WorkflowClient;
+import io.temporal.samples.moneytransfer.dataclasses.ExecutionScenarioObj;
+import io.temporal.samples.moneytransfer.dataclasses.ResultObj;
+import io.temporal.samples.moneytransfer.dataclasses.WorkflowParameterObj;
+import io.temporal.samples.moneytransfer.web.ServerInfo;
+import io.temporal.testing.TestEnvironmentOptions;
+import io.temporal.testing.TestWorkflowEnvironment;
+import io.temporal.worker.Worker;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Starts transfers at a target rate (open loop) or with a fixed number in flight (closed loop) and
+ * reports start latency, end-to-end latency percentiles and throughput.
+ *
+ * <p>Options are passed as {@code key=value} pairs, e.g.
+ *
+ * <pre>
+ * ./gradlew -q execute -PmainClass=io.temporal.samples.moneytransfer.LoadGenerator \
+ *   -Parg="rate=20 duration=60 mix=HAPPY_PATH:9,INVALID_ACCOUNT:1"
+ * </pre>
+ *
+ * <ul>
+ *   <li>{@code rate}: transfers started per second (open loop)
+ *   <li>{@code concurrency}: transfers kept in flight (closed loop), instead of {@code rate}
+ *   <li>{@code duration}: seconds to keep starting transfers, default 60
+ *   <li>{@code mix}: scenario weights, default {@code HAPPY_PATH:1}
+ *   <li>{@code target}: {@code cluster} (default) uses the configured Temporal server and a
+ *       running worker, {@code local} starts an in-process test server and worker
+ *   <li>{@code drain}: seconds to wait for outstanding transfers after the last start, default 120
+ * </ul>
+ *
+ * <p>Open loop latencies are measured from the intended start time, so a slow start is not hidden
+ * by the starts queued behind it.
+ */
+public class LoadGenerator {
+
+  // time source of the start loop, so tests can check pacing without waiting
+  interface Ticker {
+    Ticker SYSTEM =
+        new Ticker() {
+          @Override
+          public long nanoTime() {
+            return System.nanoTime();
+          }
+
+          @Override
+          public void sleep(long nanos) throws InterruptedException {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+          }
+        };
+
+    long nanoTime();
+
+    void sleep(long nanos) throws InterruptedException;
+  }
+
+  // latencies are recorded in microseconds, up to an hour
+  private static final long MAX_LATENCY_MICROS = TimeUnit.HOURS.toMicros(1);
+  private static final int REPORT_INTERVAL_SECONDS = 5;
+
+  private final WorkflowClient client;
+  private final String taskQueue;
+  private final Ticker ticker;
+  private final Map<ExecutionScenarioObj, Integer> mix;
+  private final int totalWeight;
+  private final String runPrefix =
+      "LOAD-" + Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+
+  // starting a workflow is a blocking call, so starts run on their own pool
+  private final ExecutorService starters =
+      Executors.newFixedThreadPool(
+          ServerInfo.getClientThreadCount(),
+          runnable -> {
+            Thread thread = new Thread(runnable, "load-starter");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  private final Recorder startLatency = new Recorder(MAX_LATENCY_MICROS, 3);
+  private final Recorder endToEndLatency = new Recorder(MAX_LATENCY_MICROS, 3);
+  // all latencies of the run, the recorders above only hold the latest report interval
+  private final Histogram startTotal = new Histogram(MAX_LATENCY_MICROS, 3);
+  private final Histogram endToEndTotal = new Histogram(MAX_LATENCY_MICROS, 3);
+  private final AtomicInteger sequence = new AtomicInteger();
+  private final AtomicInteger outstanding = new AtomicInteger();
+  private final AtomicLong started = new AtomicLong();
+  private final AtomicLong completed = new AtomicLong();
+  private final AtomicLong failed = new AtomicLong();
+
+  public LoadGenerator(
+      WorkflowClient client, String taskQueue, Map<ExecutionScenarioObj, Integer> mix) {
+    this(client, taskQueue, mix, Ticker.SYSTEM);
+  }
+
+  LoadGenerator(
+      WorkflowClient client,
+      String taskQueue,
+      Map<ExecutionScenarioObj, Integer> mix,
+      Ticker ticker) {
+    this.client = client;
+    this.taskQueue = taskQueue;
+    this.ticker = ticker;
+    this.mix = mix;
+    int weight = 0;
+    for (int w : mix.values()) {
+      weight += w;
+    }
+    this.totalWeight = weight;
+  }
+
+  /**
+   * Starts transfers for {@code durationSeconds}, then waits up to {@code drainSeconds} for them
+   * to finish and prints the report.
+   *
+   * @param rate transfers per second, or 0 to use {@code concurrency}
+   * @param concurrency transfers kept in flight when {@code rate} is 0
+   */
+  public void run(double rate, int concurrency, int durationSeconds, int drainSeconds)
+      throws InterruptedException {
+    Semaphore inFlight = new Semaphore(concurrency);
+
+    long begin = ticker.nanoTime();
+    long end = begin + TimeUnit.SECONDS.toNanos(durationSeconds);
+    long periodNanos = rate > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / rate) : 0;
+    long nextStart = begin;
+    long nextReport = begin + TimeUnit.SECONDS.toNanos(REPORT_INTERVAL_SECONDS);
+
+    while (ticker.nanoTime() < end) {
+      long intended;
+      if (rate > 0) {
+        // exactly rate * duration starts, the last one before the end
+        if (nextStart >= end) {
+          break;
+        }
+        long wait = nextStart - ticker.nanoTime();
+        if (wait > 0) {
+          ticker.sleep(wait);
+        }
+        intended = nextStart;
+        nextStart += periodNanos;
+      } else {
+        if (!inFlight.tryAcquire(100, TimeUnit.MILLISECONDS)) {
+          continue;
+        }
+        intended = ticker.nanoTime();
+      }
+
+      // counted before it is queued, so the drain also waits for starts still in the pool
+      outstanding.incrementAndGet();
+      starters.execute(() -> startTransfer(intended, rate > 0 ? null : inFlight));
+
+      if (ticker.nanoTime() >= nextReport) {
+        report(REPORT_INTERVAL_SECONDS);
+        nextReport += TimeUnit.SECONDS.toNanos(REPORT_INTERVAL_SECONDS);
+      }
+    }
+
+    long drainEnd = ticker.nanoTime() + TimeUnit.SECONDS.toNanos(drainSeconds);
+    while (outstanding.get() > 0 && ticker.nanoTime() < drainEnd) {
+      ticker.sleep(TimeUnit.MILLISECONDS.toNanos(100));
+    }
+    report(0);
+
+    double elapsedSeconds = (ticker.nanoTime() - begin) / 1e9;
+    System.out.printf(
+        "%nstarted %d, completed %d, failed %d, still running %d in %.1fs (%.1f transfers/s)%n",
+        started.get(),
+        completed.get(),
+        failed.get(),
+        outstanding.get(),
+        elapsedSeconds,
+        completed.get() / elapsedSeconds);
+    printPercentiles("start latency", startTotal);
+    printPercentiles("end-to-end latency", endToEndTotal);
+  }
+
+  private void startTransfer(long intended, Semaphore inFlight) {
+    String workflowId = runPrefix + "-" + sequence.incrementAndGet();
+    WorkflowParameterObj params = new WorkflowParameterObj(100, pickScenario());
+    CompletableFuture<ResultObj> result;
+    try {
+      result = startWorkflow(workflowId, params);
+    } catch (RuntimeException e) {
+      System.err.println("Failed to start " + workflowId + ": " + e);
+      failed.incrementAndGet();
+      outstanding.decrementAndGet();
+      if (inFlight != null) {
+        inFlight.release();
+      }
+      return;
+    }
+    started.incrementAndGet();
+    startLatency.recordValue(toMicros(ticker.nanoTime() - intended));
+
+    result.whenComplete(
+        (value, error) -> {
+          endToEndLatency.recordValue(toMicros(ticker.nanoTime() - intended));
+          if (error == null) {
+            completed.incrementAndGet();
+          } else {
+            failed.incrementAndGet();
+          }
+          outstanding.decrementAndGet();
+          if (inFlight != null) {
+            inFlight.release();
+          }
+        });
+  }
+
+  // starts the transfer and returns its result without waiting, replaced in tests
+  CompletableFuture<ResultObj> startWorkflow(String workflowId, WorkflowParameterObj params) {
+    TransferRequester.runWorkflow(client, taskQueue, workflowId, params);
+    return client.newUntypedWorkflowStub(workflowId).getResultAsync(ResultObj.class);
+  }
+
+  long getStarted() {
+    return started.get();
+  }
+
+  long getCompleted() {
+    return completed.get();
+  }
+
+  Histogram getStartLatency() {
+    return startTotal;
+  }
+
+  Histogram getEndToEndLatency() {
+    return endToEndTotal;
+  }
+
+  private ExecutionScenarioObj pickScenario() {
+    int pick = ThreadLocalRandom.current().nextInt(totalWeight);
+    for (Map.Entry<ExecutionScenarioObj, Integer> entry : mix.entrySet()) {
+      pick -= entry.getValue();
+      if (pick < 0) {
+        return entry.getKey();
+      }
+    }
+    throw new IllegalStateException("scenario weights changed");
+  }
+
+  // adds the latest interval to the totals, and prints it unless intervalSeconds is 0
+  private void report(int intervalSeconds) {
+    Histogram startInterval = startLatency.getIntervalHistogram();
+    Histogram endToEndInterval = endToEndLatency.getIntervalHistogram();
+    startTotal.add(startInterval);
+    endToEndTotal.add(endToEndInterval);
+    if (intervalSeconds > 0) {
+      System.out.printf(
+          "started %5.1f/s  finished %5.1f/s  in flight %5d  end-to-end p50 %7.1fms p99 %7.1fms%n",
+          startInterval.getTotalCount() / (double) intervalSeconds,
+          endToEndInterval.getTotalCount() / (double) intervalSeconds,
+          outstanding.get(),
+          endToEndInterval.getValueAtPercentile(50) / 1000.0,
+          endToEndInterval.getValueAtPercentile(99) / 1000.0);
+    }
+  }
+
+  private static void printPercentiles(String name, Histogram histogram) {
+    System.out.printf(
+        "%-20s p50 %8.1fms  p90 %8.1fms  p99 %8.1fms  p99.9 %8.1fms  max %8.1fms%n",
+        name,
+        histogram.getValueAtPercentile(50) / 1000.0,
+        histogram.getValueAtPercentile(90) / 1000.0,
+        histogram.getValueAtPercentile(99) / 1000.0,
+        histogram.getValueAtPercentile(99.9) / 1000.0,
+        histogram.getMaxValue() / 1000.0);
+  }
+
+  private static long toMicros(long nanos) {
+    return Math.min(TimeUnit.NANOSECONDS.toMicros(nanos), MAX_LATENCY_MICROS);
+  }
+
+  // parses e.g. "HAPPY_PATH:9,INVALID_ACCOUNT:1", a scenario without a weight counts once
+  static Map<ExecutionScenarioObj, Integer> parseMix(String mix) {
+    Map<ExecutionScenarioObj, Integer> weights = new LinkedHashMap<>();
+    for (String entry : mix.split(",")) {
+      String[] parts = entry.trim().split(":");
+      int weight = parts.length > 1 ? Integer.parseInt(parts[1]) : 1;
+      if (weight < 0) {
+        throw new IllegalArgumentException("negative weight in mix: " + entry);
+      }
+      if (weight > 0) {
+        weights.put(ExecutionScenarioObj.valueOf(parts[0].trim()), weight);
+      }
+    }
+    if (weights.isEmpty()) {
+      throw new IllegalArgumentException("mix has no scenarios: " + mix);
+    }
+    return weights;
+  }
+
+  // parses "key=value" pairs, the gradle execute task passes them as one argument
+  static Map<String, String> parseOptions(String[] args) {
+    Map<String, String> options = new LinkedHashMap<>();
+    for (String arg : String.join(" ", args).trim().split("\\s+")) {
+      if (arg.isEmpty()) {
+        continue;
+      }
+      int eq = arg.indexOf('=');
+      if (eq < 0) {
+        throw new IllegalArgumentException("expected key=value, got " + arg);
+      }
+      options.put(arg.substring(0, eq), arg.substring(eq + 1));
+    }
+    return options;
+  }
+
+  // the options of one run, with defaults applied and checked before anything is started
+  static final class RunOptions {
+    final double rate;
+    final int concurrency;
+    final int duration;
+    final int drain;
+    final Map<ExecutionScenarioObj, Integer> mix;
+    final String target;
+
+    RunOptions(Map<String, String> options) {
+      rate = Double.parseDouble(options.getOrDefault("rate", "0"));
+      concurrency = Integer.parseInt(options.getOrDefault("concurrency", "0"));
+      if ((rate > 0) == (concurrency > 0)) {
+        throw new IllegalArgumentException("set exactly one of rate=N or concurrency=N");
+      }
+      duration = Integer.parseInt(options.getOrDefault("duration", "60"));
+      if (duration <= 0) {
+        throw new IllegalArgumentException("duration must be positive, got " + duration);
+      }
+      drain = Integer.parseInt(options.getOrDefault("drain", "120"));
+      if (drain < 0) {
+        throw new IllegalArgumentException("drain must not be negative, got " + drain);
+      }
+      mix = parseMix(options.getOrDefault("mix", "HAPPY_PATH:1"));
+      target = options.getOrDefault("target", "cluster");
+      if (!"cluster".equals(target) && !"local".equals(target)) {
+        throw new IllegalArgumentException("target must be cluster or local, got " + target);
+      }
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    RunOptions options = new RunOptions(parseOptions(args));
+    double rate = options.rate;
+    int concurrency = options.concurrency;
+    int duration = options.duration;
+    int drain = options.drain;
+    Map<ExecutionScenarioObj, Integer> mix = options.mix;
+    String target = options.target;
+
+    System.out.println(
+        (rate > 0 ? "Open loop at " + rate + " transfers/s" : "Closed loop with " + concurrency)
+            + " for "
+            + duration
+            + "s against "
+            + target
+            + ", mix "
+            + mix);
+
+    if ("local".equals(target)) {
+      // real time, so latencies include the workflow's sleeps like they would on a cluster
+      TestWorkflowEnvironment testEnv =
+          TestWorkflowEnvironment.newInstance(
+              TestEnvironmentOptions.newBuilder().setUseTimeskipping(false).build());
+      String taskQueue = "LoadGenerator";
+      Worker worker = testEnv.newWorker(taskQueue);
+      worker.registerWorkflowImplementationTypes(AccountTransferWorkflowImpl.class);
+      worker.registerActivitiesImplementations(new AccountTransferActivitiesImpl());
+      testEnv.start();
+      new LoadGenerator(testEnv.getWorkflowClient(), taskQueue, mix)
+          .run(rate, concurrency, duration, drain);
+      testEnv.close();
+    } else {
+      new LoadGenerator(TemporalClient.get(), ServerInfo.getTaskqueue(), mix)
+          .run(rate, concurrency, duration, drain);
+    }
+
+    System.exit(0);
+  }
+}
@@ -21,11 +21,18 @@ package io.temporal.samples.moneytransfer;
 
 import static io.temporal.samples.moneytransfer.TemporalClient.getWorkflowServiceStubs;
 
+import com.google.protobuf.ByteString;
+import io.temporal.api.common.v1.WorkflowExecution;
+import io.temporal.api.common.v1.WorkflowType;
+import io.temporal.api.history.v1.History;
+import io.temporal.api.workflow.v1.WorkflowExecutionInfo;
 import io.temporal.api.workflowservice.v1.*;
 import io.temporal.client.WorkflowClientOptions;
 import io.temporal.common.WorkflowExecutionHistory;
 import io.temporal.common.converter.CodecDataConverter;
 import io.temporal.common.converter.DefaultDataConverter;
+import io.temporal.payload.codec.PayloadCodec;
+import io.temporal.samples.moneytransfer.dataconverter.CompressionCodec;
 import io.temporal.samples.moneytransfer.dataconverter.CryptCodec;
 import io.temporal.samples.moneytransfer.web.ServerInfo;
 import io.temporal.serviceclient.WorkflowServiceStubs;
@@ -34,86 +41,298 @@ import io.temporal.testing.TestWorkflowEnvironmentInternal;
 import io.temporal.testing.WorkflowReplayer;
 import io.temporal.worker.Worker;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import javax.net.ssl.SSLException;
 
 public class RecentHistoryReplayer {
 
-  public static List<WorkflowExecutionHistory> getWorkflowHistories()
+  private static final int DEFAULT_EXECUTIONS = 5;
+  private static final int DOWNLOAD_THREADS = 16;
+
+  // e.g. "Failure handling event 15 of type 'EVENT_TYPE_ACTIVITY_TASK_SCHEDULED' during replay"
+  private static final Pattern FAILURE_LOCATION =
+      Pattern.compile("event (\\d+) of type '(\\w+)'");
+
+  /** The most recent executions, following visibility pages until {@code maxExecutions}. */
+  public static List<WorkflowExecutionInfo> getRecentExecutions(int maxExecutions)
       throws FileNotFoundException, SSLException {
 
     WorkflowServiceStubs service = getWorkflowServiceStubs();
 
     String query = "WorkflowType = 'moneyTransferWorkflow'";
 
-    ListWorkflowExecutionsRequest listWorkflowExecutionRequest =
-        ListWorkflowExecutionsRequest.newBuilder()
-            .setNamespace(ServerInfo.getNamespace())
-            .setPageSize(5)
-            .setQuery(query)
-            .build();
-    ListWorkflowExecutionsResponse listWorkflowExecutionsResponse =
-        service.blockingStub().listWorkflowExecutions(listWorkflowExecutionRequest);
-
-    List<WorkflowExecutionHistory> histories =
-        listWorkflowExecutionsResponse.getExecutionsList().stream()
-            .map(
-                (info) -> {
-                  GetWorkflowExecutionHistoryResponse weh =
-                      service
-                          .blockingStub()
-                          .getWorkflowExecutionHistory(
-                              GetWorkflowExecutionHistoryRequest.newBuilder()
-                                  .setNamespace(ServerInfo.getNamespace())
-                                  .setExecution(info.getExecution())
-                                  .build());
-                  return new WorkflowExecutionHistory(
-                      weh.getHistory(), info.getExecution().getWorkflowId());
-                })
-            .collect(Collectors.toList());
-
-    return histories;
+    List<WorkflowExecutionInfo> executions = new ArrayList<>();
+    ByteString pageToken = ByteString.EMPTY;
+    do {
+      ListWorkflowExecutionsRequest listWorkflowExecutionRequest =
+          ListWorkflowExecutionsRequest.newBuilder()
+              .setNamespace(ServerInfo.getNamespace())
+              .setPageSize(Math.min(maxExecutions - executions.size(), 1000))
+              .setQuery(query)
+              .setNextPageToken(pageToken)
+              .build();
+      ListWorkflowExecutionsResponse listWorkflowExecutionsResponse =
+          service.blockingStub().listWorkflowExecutions(listWorkflowExecutionRequest);
+
+      executions.addAll(listWorkflowExecutionsResponse.getExecutionsList());
+      pageToken = listWorkflowExecutionsResponse.getNextPageToken();
+    } while (!pageToken.isEmpty() && executions.size() < maxExecutions);
+
+    return executions.size() > maxExecutions ? executions.subList(0, maxExecutions) : executions;
   }
 
-  public static void main(String[] args) throws Exception {
+  /** Downloads the full history of an execution, following history pages. */
+  public static WorkflowExecutionHistory getWorkflowHistory(
+      WorkflowServiceStubs service, WorkflowExecutionInfo info) {
+    History.Builder history = History.newBuilder();
+    ByteString pageToken = ByteString.EMPTY;
+    do {
+      GetWorkflowExecutionHistoryResponse weh =
+          service
+              .blockingStub()
+              .getWorkflowExecutionHistory(
+                  GetWorkflowExecutionHistoryRequest.newBuilder()
+                      .setNamespace(ServerInfo.getNamespace())
+                      .setExecution(info.getExecution())
+                      .setNextPageToken(pageToken)
+                      .build());
+      history.addAllEvents(weh.getHistory().getEventsList());
+      pageToken = weh.getNextPageToken();
+    } while (!pageToken.isEmpty());
+
+    return new WorkflowExecutionHistory(history.build(), info.getExecution().getWorkflowId());
+  }
+
+  /**
+   * Downloads and replays the given executions. Downloads run on their own pool so replay, which is
+   * CPU bound, always has histories ready; replays run on one thread per core, each with its own
+   * replay worker. Downloads are usually faster than replays, so the executions in flight are
+   * bounded to keep the histories waiting for a replay thread from filling the heap.
+   *
+   * @return workflow IDs of failed replays and downloads, grouped by workflow type and failure
+   *     location
+   */
+  public static Map<String, List<String>> replay(
+      List<WorkflowExecutionInfo> executions, HistoryCorpus corpus)
+      throws FileNotFoundException, SSLException {
+    // not needed when every history is already in the corpus, e.g. offline replays
+    WorkflowServiceStubs service = null;
+    for (WorkflowExecutionInfo info : executions) {
+      if (!corpus.contains(info.getExecution().getRunId())) {
+        service = getWorkflowServiceStubs();
+        break;
+      }
+    }
+    WorkflowServiceStubs downloadService = service;
+
+    ExecutorService downloadPool = Executors.newFixedThreadPool(DOWNLOAD_THREADS);
+    int replayThreads = Runtime.getRuntime().availableProcessors();
+    ExecutorService replayPool = Executors.newFixedThreadPool(replayThreads);
+    // enough to keep both pools busy, one download and up to two replays per thread
+    Semaphore inFlight = new Semaphore(DOWNLOAD_THREADS + 2 * replayThreads);
+
+    List<TestWorkflowEnvironmentInternal> testEnvs =
+        Collections.synchronizedList(new ArrayList<>());
+    ThreadLocal<Worker> replayWorker =
+        ThreadLocal.withInitial(
+            () -> {
+              TestWorkflowEnvironmentInternal testEnv = newReplayEnvironment();
+              testEnvs.add(testEnv);
+              Worker worker = testEnv.newWorker("my-task-queue");
+              worker.registerWorkflowImplementationTypes(AccountTransferWorkflowImpl.class);
+              return worker;
+            });
+
+    Map<String, List<String>> failures = new TreeMap<>();
+    AtomicInteger replayed = new AtomicInteger();
+
+    List<CompletableFuture<Void>> replays = new ArrayList<>();
+    for (WorkflowExecutionInfo info : executions) {
+      inFlight.acquireUninterruptibly();
+      replays.add(
+          CompletableFuture.supplyAsync(
+                  () -> getWorkflowHistory(downloadService, corpus, info), downloadPool)
+              .thenAcceptAsync(
+                  history -> {
+                    try {
+                      WorkflowReplayer.replayWorkflowExecution(history, replayWorker.get());
+                    } catch (Exception e) {
+                      String key = info.getType().getName() + " @ " + getFailureLocation(e);
+                      System.out.println(
+                          "Replay failed: " + info.getExecution().getWorkflowId() + " " + key);
+                      synchronized (failures) {
+                        failures.computeIfAbsent(key, k -> new ArrayList<>());
+                        failures.get(key).add(info.getExecution().getWorkflowId());
+                      }
+                    }
+
+                    int count = replayed.incrementAndGet();
+                    if (count % 100 == 0) {
+                      System.out.println("Replayed " + count + "/" + executions.size());
+                    }
+                  },
+                  replayPool)
+              .exceptionally(
+                  e -> {
+                    // a history that could not be checked fails the run too
+                    System.out.println(
+                        "Download failed: " + info.getExecution().getWorkflowId() + " " + e);
+                    String key = info.getType().getName() + " @ download failed";
+                    synchronized (failures) {
+                      failures.computeIfAbsent(key, k -> new ArrayList<>());
+                      failures.get(key).add(info.getExecution().getWorkflowId());
+                    }
+                    return null;
+                  })
+              .whenComplete((ignored, e) -> inFlight.release()));
+    }
+
+    CompletableFuture.allOf(replays.toArray(new CompletableFuture<?>[0])).join();
+    corpus.saveIndex();
+
+    downloadPool.shutdown();
+    replayPool.shutdown();
+    for (TestWorkflowEnvironmentInternal testEnv : testEnvs) {
+      testEnv.close();
+    }
+
+    return failures;
+  }
+
+  // from the corpus if present, otherwise downloaded and added to the corpus
+  private static WorkflowExecutionHistory getWorkflowHistory(
+      WorkflowServiceStubs service, HistoryCorpus corpus, WorkflowExecutionInfo info) {
+    try {
+      WorkflowExecutionHistory history = corpus.get(info.getExecution().getRunId());
+      if (history == null) {
+        history = getWorkflowHistory(service, info);
+        corpus.put(info, history);
+      }
+      return history;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // corpus entries in the form returned by visibility, so they replay through the same path
+  private static List<WorkflowExecutionInfo> getCorpusExecutions(
+      HistoryCorpus corpus, int maxExecutions) {
+    List<WorkflowExecutionInfo> executions = new ArrayList<>();
+    for (HistoryCorpus.Entry entry : corpus.getEntries()) {
+      if (executions.size() >= maxExecutions) {
+        break;
+      }
+      executions.add(
+          WorkflowExecutionInfo.newBuilder()
+              .setExecution(
+                  WorkflowExecution.newBuilder()
+                      .setWorkflowId(entry.getWorkflowId())
+                      .setRunId(entry.getRunId()))
+              .setType(WorkflowType.newBuilder().setName(entry.getWorkflowType()))
+              .build());
+    }
+    return executions;
+  }
 
-    List<WorkflowExecutionHistory> histories = getWorkflowHistories();
+  private static TestWorkflowEnvironmentInternal newReplayEnvironment() {
+    // both codecs only decode payloads carrying their encoding, so any history can be replayed
+    List<PayloadCodec> codecs =
+        Arrays.asList(new CryptCodec(), new CompressionCodec(Integer.MAX_VALUE));
 
     // Make replayer compatible with data converter
-    TestWorkflowEnvironmentInternal testEnv =
-        new TestWorkflowEnvironmentInternal(
-            TestEnvironmentOptions.newBuilder()
-                .setWorkflowClientOptions(
-                    WorkflowClientOptions.newBuilder()
-                        .setDataConverter(
-                            new CodecDataConverter(
-                                DefaultDataConverter.newDefaultInstance(),
-                                Collections.singletonList(new CryptCodec()),
-                                true /* encode failure attributes */))
-                        .build())
-                .build());
-
-    Worker worker = testEnv.newWorker("my-task-queue");
-    worker.registerWorkflowImplementationTypes(AccountTransferWorkflowImpl.class);
+    return new TestWorkflowEnvironmentInternal(
+        TestEnvironmentOptions.newBuilder()
+            .setWorkflowClientOptions(
+                WorkflowClientOptions.newBuilder()
+                    .setDataConverter(
+                        new CodecDataConverter(
+                            DefaultDataConverter.newDefaultInstance(),
+                            codecs,
+                            true /* encode failure attributes */))
+                    .build())
+            .build());
+  }
 
-    // history length
-    System.out.println("Replaying " + histories.size() + " most recent workflow executions.");
-
-    for (WorkflowExecutionHistory history : histories) {
-      System.out.println("Replaying workflow: " + history.getWorkflowExecution().getWorkflowId());
-
-      try {
-        WorkflowReplayer.replayWorkflowExecution(history, worker);
-        System.out.println("Replay completed successfully");
-      } catch (Exception e) {
-        System.out.println(e.getMessage());
-        System.out.println(
-            "Replay failed, check above output for io.temporal.worker.NonDeterministicException");
+  private static String getFailureLocation(Throwable e) {
+    for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+      if (cause.getMessage() != null) {
+        Matcher matcher = FAILURE_LOCATION.matcher(cause.getMessage());
+        if (matcher.find()) {
+          return "event " + matcher.group(1) + " " + matcher.group(2);
+        }
       }
     }
+    return e.getClass().getSimpleName();
+  }
+
+  public static void main(String[] args) throws Exception {
+
+    // optional number of most recent executions to replay, e.g. -Parg=5000,
+    // prefixed with "offline:" to replay only from the local corpus, e.g. -Parg=offline:5000
+    String arg = args.length > 0 ? args[0] : "";
+    boolean offline = arg.startsWith("offline");
+    if (offline) {
+      arg = arg.substring("offline".length()).replace(":", "");
+    }
+    int maxExecutions = !arg.isEmpty() ? Integer.parseInt(arg) : DEFAULT_EXECUTIONS;
+
+    HistoryCorpus corpus = new HistoryCorpus(Paths.get(ServerInfo.getHistoryCorpusDir()));
+
+    List<WorkflowExecutionInfo> executions =
+        offline ? getCorpusExecutions(corpus, maxExecutions) : getRecentExecutions(maxExecutions);
+
+    // history length
+    System.out.println("Replaying " + executions.size() + " most recent workflow executions.");
+
+    long start = System.currentTimeMillis();
+    Map<String, List<String>> failures = replay(executions, corpus);
+    long elapsed = System.currentTimeMillis() - start;
+
+    int failed = 0;
+    for (List<String> workflowIds : failures.values()) {
+      failed += workflowIds.size();
+    }
+    System.out.println(
+        "\nReplayed "
+            + executions.size()
+            + " executions in "
+            + elapsed
+            + "ms, "
+            + failed
+            + " failed.");
+
+    for (Map.Entry<String, List<String>> failure : failures.entrySet()) {
+      List<String> workflowIds = failure.getValue();
+      System.out.println(
+          "  "
+              + failure.getKey()
+              + ": "
+              + workflowIds.size()
+              + " e.g. "
+              + workflowIds.subList(0, Math.min(5, workflowIds.size())));
+    }
+
+    if (failed > 0) {
+      System.out.println(
+          "Replay failed, check above output for io.temporal.worker.NonDeterministicException");
+    }
 
-    testEnv.close();
+    // non-zero on any failure so scripts and CI can use this as a non-determinism check
+    System.exit(failed > 0 ? 1 : 0);
   }
 }
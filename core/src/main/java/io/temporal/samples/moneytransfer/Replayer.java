@@ -19,39 +19,71 @@
 
 package io.temporal.samples.moneytransfer;
 
+import io.temporal.common.WorkflowExecutionHistory;
+import io.temporal.testing.TestWorkflowEnvironment;
 import io.temporal.testing.WorkflowReplayer;
+import io.temporal.worker.Worker;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class Replayer {
   public static void main(String[] args) throws IOException {
-    // get command line argument for string WorkflowId
-    String historyFile = args[0];
+    // get command line argument for a history file or a directory of history files
+    Path historyPath = Paths.get(args[0]);
 
-    Path historyFilePath = Paths.get(historyFile);
+    System.out.println("Reading from: " + historyPath.toAbsolutePath());
 
-    System.out.println("Reading from file: " + historyFilePath.toAbsolutePath());
-    String historyFileString =
-        new String(Files.readAllBytes(historyFilePath), StandardCharsets.UTF_8);
-
-    System.out.println("History file string length: " + historyFileString.length());
+    List<Path> historyFiles;
+    if (Files.isDirectory(historyPath)) {
+      try (Stream<Path> files = Files.list(historyPath)) {
+        historyFiles =
+            files.filter(HistoryFileReader::isHistoryFile).sorted().collect(Collectors.toList());
+      }
+    } else {
+      historyFiles = Collections.singletonList(historyPath);
+    }
 
-    try {
-      // read history file to string
+    // one replay worker for all files instead of one per replay
+    TestWorkflowEnvironment testEnv = TestWorkflowEnvironment.newInstance();
+    Worker worker = testEnv.newWorker("replay-task-queue");
+    worker.registerWorkflowImplementationTypes(AccountTransferWorkflowImpl.class);
 
+    int failed = 0;
+    for (Path historyFile : historyFiles) {
       System.out.println("Replaying workflow: " + historyFile);
 
-      WorkflowReplayer.replayWorkflowExecution(
-          historyFileString, AccountTransferWorkflowImpl.class);
+      try {
+        long readStart = System.nanoTime();
+        WorkflowExecutionHistory history = HistoryFileReader.read(historyFile);
+        long replayStart = System.nanoTime();
+
+        WorkflowReplayer.replayWorkflowExecution(history, worker);
+        long replayEnd = System.nanoTime();
 
-      System.out.println("Replay completed successfully");
-    } catch (Exception e) {
-      System.out.println(e.getMessage());
+        System.out.printf(
+            "Replay completed successfully (%d events, read %dms, replay %dms)%n",
+            history.getHistory().getEventsCount(),
+            (replayStart - readStart) / 1_000_000,
+            (replayEnd - replayStart) / 1_000_000);
+      } catch (Exception e) {
+        failed++;
+        System.out.println(e.getMessage());
+        System.out.println(
+            "Replay failed, check above output for io.temporal.worker.NonDeterministicException");
+      }
+    }
+
+    if (historyFiles.size() > 1) {
       System.out.println(
-          "Replay failed, check above output for io.temporal.worker.NonDeterministicException");
+          "\nReplayed " + historyFiles.size() + " histories, " + failed + " failed.");
     }
+
+    testEnv.close();
   }
 }
@@ -19,108 +19,273 @@
 
 package io.temporal.samples.moneytransfer;
 
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import io.temporal.client.WorkflowClient;
 import io.temporal.client.WorkflowClientOptions;
 import io.temporal.client.schedules.ScheduleClient;
 import io.temporal.client.schedules.ScheduleClientOptions;
 import io.temporal.common.converter.CodecDataConverter;
+import io.temporal.common.converter.DataConverter;
 import io.temporal.common.converter.DefaultDataConverter;
+import io.temporal.payload.codec.PayloadCodec;
+import io.temporal.samples.moneytransfer.dataconverter.CompressionCodec;
 import io.temporal.samples.moneytransfer.dataconverter.CryptCodec;
+import io.temporal.samples.moneytransfer.dataconverter.TimedCodec;
 import io.temporal.samples.moneytransfer.web.ServerInfo;
 import io.temporal.serviceclient.SimpleSslContextBuilder;
 import io.temporal.serviceclient.WorkflowServiceStubs;
 import io.temporal.serviceclient.WorkflowServiceStubsOptions;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
-import java.util.Collections;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.net.ssl.SSLException;
 
+/**
+ * Process-wide Temporal connection manager.
+ *
+ * <p>Stubs and clients are created lazily on first use and shared by everything in the JVM (web
+ * server, schedulers, listers, replayers), keyed by address, namespace and payload codec. Each key
+ * owns {@code TEMPORAL_CHANNEL_COUNT} gRPC channels which are handed out round-robin. Channels are
+ * closed by a JVM shutdown hook, or explicitly through {@link #shutdown()}.
+ */
 public class TemporalClient {
+
+  private static final Map<ConnectionKey, Connection> connections = new ConcurrentHashMap<>();
+
+  private static boolean shutdownHookRegistered = false;
+
   public static WorkflowServiceStubs getWorkflowServiceStubs()
       throws FileNotFoundException, SSLException {
+    return getConnection().next().service;
+  }
+
+  public static WorkflowClient get() throws FileNotFoundException, SSLException {
+    return getConnection().next().client;
+  }
+
+  public static ScheduleClient getScheduleClient() throws FileNotFoundException, SSLException {
+    return getConnection().next().scheduleClient;
+  }
+
+  public static DataConverter getDataConverter() {
+    List<PayloadCodec> codecs = getPayloadCodecs();
+
+    if (codecs.isEmpty()) {
+      return DefaultDataConverter.newDefaultInstance();
+    }
+    return new CodecDataConverter(
+        DefaultDataConverter.newDefaultInstance(), codecs, true /* encode failure attributes */);
+  }
+
+  /** Codecs configured for this process, in CodecDataConverter order. */
+  public static List<PayloadCodec> getPayloadCodecs() {
+    // codecs encode last to first, so payloads are compressed before they are encrypted
+    List<PayloadCodec> codecs = new ArrayList<>();
+
+    // if environment variable ENCRYPT_PAYLOADS is set to true, then use CryptCodec
+    if (ServerInfo.isEncryptPayloads()) {
+      codecs.add(new TimedCodec("crypt", new CryptCodec(), Metrics.getRegistry()));
+    }
+    // if environment variable COMPRESS_PAYLOADS is set to true, then use CompressionCodec
+    if (ServerInfo.isCompressPayloads()) {
+      codecs.add(
+          new TimedCodec(
+              "zlib",
+              new CompressionCodec(ServerInfo.getCompressionThresholdBytes()),
+              Metrics.getRegistry()));
+    }
+    return codecs;
+  }
+
+  /** Adapts a gRPC future stub call, e.g. {@code service.futureStub().describe...}. */
+  public static <T> CompletableFuture<T> toCompletableFuture(ListenableFuture<T> future) {
+    CompletableFuture<T> result = new CompletableFuture<>();
+    Futures.addCallback(
+        future,
+        new FutureCallback<T>() {
+          @Override
+          public void onSuccess(T response) {
+            result.complete(response);
+          }
+
+          @Override
+          public void onFailure(Throwable t) {
+            result.completeExceptionally(t);
+          }
+        },
+        MoreExecutors.directExecutor());
+    return result;
+  }
+
+  /** Closes every shared channel. Clients obtained before this call must not be used afterwards. */
+  public static synchronized void shutdown() {
+    for (Connection connection : connections.values()) {
+      connection.shutdown();
+    }
+    connections.clear();
+  }
+
+  private static Connection getConnection() throws FileNotFoundException, SSLException {
+    ConnectionKey key =
+        new ConnectionKey(
+            ServerInfo.getAddress(),
+            ServerInfo.getNamespace(),
+            (ServerInfo.isEncryptPayloads() ? "crypt" : "")
+                + (ServerInfo.isCompressPayloads() ? "zlib" : ""));
+
+    Connection connection = connections.get(key);
+    if (connection != null) {
+      return connection;
+    }
+
+    synchronized (TemporalClient.class) {
+      connection = connections.get(key);
+      if (connection == null) {
+        connection = new Connection(ServerInfo.getChannelCount());
+        connections.put(key, connection);
+
+        if (!shutdownHookRegistered) {
+          Runtime.getRuntime()
+              .addShutdownHook(new Thread(TemporalClient::shutdown, "temporal-client-shutdown"));
+          shutdownHookRegistered = true;
+        }
+      }
+      return connection;
+    }
+  }
+
+  private static WorkflowServiceStubs newWorkflowServiceStubs()
+      throws FileNotFoundException, SSLException {
     WorkflowServiceStubsOptions.Builder workflowServiceStubsOptionsBuilder =
         WorkflowServiceStubsOptions.newBuilder();
 
     if (!ServerInfo.getCertPath().equals("") && !"".equals(ServerInfo.getKeyPath())) {
-      InputStream clientCert = new FileInputStream(ServerInfo.getCertPath());
-
-      InputStream clientKey = new FileInputStream(ServerInfo.getKeyPath());
-
-      workflowServiceStubsOptionsBuilder.setSslContext(
-          SimpleSslContextBuilder.forPKCS8(clientCert, clientKey).build());
+      try (InputStream clientCert = new FileInputStream(ServerInfo.getCertPath());
+          InputStream clientKey = new FileInputStream(ServerInfo.getKeyPath())) {
+        workflowServiceStubsOptionsBuilder.setSslContext(
+            SimpleSslContextBuilder.forPKCS8(clientCert, clientKey).build());
+      } catch (SSLException | FileNotFoundException e) {
+        throw e;
+      } catch (IOException e) {
+        throw new SSLException(e);
+      }
     }
 
     // For temporal cloud this would likely be ${namespace}.tmprl.cloud:7233
-    String targetEndpoint = ServerInfo.getAddress();
-    // Your registered namespace.
+    workflowServiceStubsOptionsBuilder.setTarget(ServerInfo.getAddress());
 
-    workflowServiceStubsOptionsBuilder.setTarget(targetEndpoint);
-    WorkflowServiceStubs service = null;
+    // SDK client and worker metrics, scraped from /metrics
+    workflowServiceStubsOptionsBuilder.setMetricsScope(Metrics.getMetricsScope());
 
-    if (!ServerInfo.getAddress().equals("localhost:7233")) {
-      // if not local server, then use the workflowServiceStubsOptionsBuilder
-      service = WorkflowServiceStubs.newServiceStubs(workflowServiceStubsOptionsBuilder.build());
-    } else {
-      service = WorkflowServiceStubs.newLocalServiceStubs();
+    // keep idle channels alive through load balancers instead of reconnecting on the next call
+    if (ServerInfo.getKeepAliveSeconds() > 0) {
+      workflowServiceStubsOptionsBuilder
+          .setEnableKeepAlive(true)
+          .setKeepAliveTime(Duration.ofSeconds(ServerInfo.getKeepAliveSeconds()))
+          .setKeepAliveTimeout(Duration.ofSeconds(ServerInfo.getKeepAliveTimeoutSeconds()))
+          .setKeepAlivePermitWithoutStream(true);
     }
 
-    return service;
+    return WorkflowServiceStubs.newServiceStubs(workflowServiceStubsOptionsBuilder.build());
   }
 
-  public static WorkflowClient get() throws FileNotFoundException, SSLException {
-    // TODO support local server
-    // Get worker to poll the common task queue.
-    // gRPC stubs wrapper that talks to the local docker instance of temporal service.
-    // WorkflowServiceStubs service = WorkflowServiceStubs.newLocalServiceStubs();
+  private static final class ConnectionKey {
+    private final String address;
+    private final String namespace;
+    private final String codec;
 
-    WorkflowServiceStubs service = getWorkflowServiceStubs();
+    ConnectionKey(String address, String namespace, String codec) {
+      this.address = address;
+      this.namespace = namespace;
+      this.codec = codec;
+    }
 
-    WorkflowClientOptions.Builder builder = WorkflowClientOptions.newBuilder();
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof ConnectionKey)) {
+        return false;
+      }
+      ConnectionKey that = (ConnectionKey) o;
+      return address.equals(that.address)
+          && namespace.equals(that.namespace)
+          && codec.equals(that.codec);
+    }
 
-    // if environment variable ENCRYPT_PAYLOADS is set to true, then use CryptCodec
-    if (System.getenv("ENCRYPT_PAYLOADS") != null
-        && System.getenv("ENCRYPT_PAYLOADS").equals("true")) {
-      builder.setDataConverter(
-          new CodecDataConverter(
-              DefaultDataConverter.newDefaultInstance(),
-              Collections.singletonList(new CryptCodec()),
-              true /* encode failure attributes */));
+    @Override
+    public int hashCode() {
+      return Objects.hash(address, namespace, codec);
     }
+  }
 
-    System.out.println("<<<<SERVER INFO>>>>:\n " + ServerInfo.getServerInfo());
-    WorkflowClientOptions clientOptions = builder.setNamespace(ServerInfo.getNamespace()).build();
+  // one gRPC channel together with the clients built on top of it
+  private static final class Channel {
+    private final WorkflowServiceStubs service;
+    private final WorkflowClient client;
+    private final ScheduleClient scheduleClient;
 
-    // client that can be used to start and signal workflows
-    WorkflowClient client = WorkflowClient.newInstance(service, clientOptions);
-    return client;
-  }
+    Channel(WorkflowServiceStubs service) {
+      this.service = service;
 
-  public static ScheduleClient getScheduleClient() throws FileNotFoundException, SSLException {
-    // TODO support local server
-    // Get worker to poll the common task queue.
-    // gRPC stubs wrapper that talks to the local docker instance of temporal service.
-    // WorkflowServiceStubs service = WorkflowServiceStubs.newLocalServiceStubs();
+      DataConverter dataConverter = getDataConverter();
 
-    WorkflowServiceStubs service = getWorkflowServiceStubs();
+      WorkflowClientOptions clientOptions =
+          WorkflowClientOptions.newBuilder()
+              .setDataConverter(dataConverter)
+              .setNamespace(ServerInfo.getNamespace())
+              .setInterceptors(Tracing.getClientInterceptors())
+              .build();
+      // client that can be used to start and signal workflows
+      this.client = WorkflowClient.newInstance(service, clientOptions);
 
-    ScheduleClientOptions.Builder builder = ScheduleClientOptions.newBuilder();
+      ScheduleClientOptions scheduleClientOptions =
+          ScheduleClientOptions.newBuilder()
+              .setDataConverter(dataConverter)
+              .setNamespace(ServerInfo.getNamespace())
+              .build();
+      this.scheduleClient = ScheduleClient.newInstance(service, scheduleClientOptions);
+    }
+  }
 
-    // if environment variable ENCRYPT_PAYLOADS is set to true, then use CryptCodec
-    if (System.getenv("ENCRYPT_PAYLOADS") != null
-        && System.getenv("ENCRYPT_PAYLOADS").equals("true")) {
-      builder.setDataConverter(
-          new CodecDataConverter(
-              DefaultDataConverter.newDefaultInstance(),
-              Collections.singletonList(new CryptCodec()),
-              true /* encode failure attributes */));
+  private static final class Connection {
+    private final Channel[] channels;
+    private final AtomicInteger nextChannel = new AtomicInteger();
+
+    Connection(int channelCount) throws FileNotFoundException, SSLException {
+      System.out.println("<<<<SERVER INFO>>>>:\n " + ServerInfo.getServerInfo());
+
+      channels = new Channel[Math.max(1, channelCount)];
+      for (int i = 0; i < channels.length; i++) {
+        channels[i] = new Channel(newWorkflowServiceStubs());
+      }
     }
 
-    System.out.println("<<<<SERVER INFO>>>>:\n " + ServerInfo.getServerInfo());
-    ScheduleClientOptions clientOptions = builder.setNamespace(ServerInfo.getNamespace()).build();
+    Channel next() {
+      return channels[Math.floorMod(nextChannel.getAndIncrement(), channels.length)];
+    }
 
-    // client that can be used to start and signal workflows
-    ScheduleClient client = ScheduleClient.newInstance(service, clientOptions);
-    return client;
+    void shutdown() {
+      for (Channel channel : channels) {
+        channel.service.shutdown();
+      }
+      for (Channel channel : channels) {
+        channel.service.awaitTermination(5, TimeUnit.SECONDS);
+      }
+    }
   }
 }
@@ -0,0 +1,172 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package io.temporal.samples.moneytransfer;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.propagation.ContextPropagators;
+import io.opentelemetry.context.propagation.TextMapGetter;
+import io.opentelemetry.exporter.jaeger.JaegerGrpcSpanExporter;
+import io.opentelemetry.opentracingshim.OpenTracingShim;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.export.BatchSpanProcessor;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import io.opentelemetry.semconv.resource.attributes.ResourceAttributes;
+import io.temporal.common.interceptors.WorkerInterceptor;
+import io.temporal.common.interceptors.WorkflowClientInterceptor;
+import io.temporal.opentracing.OpenTracingClientInterceptor;
+import io.temporal.opentracing.OpenTracingOptions;
+import io.temporal.opentracing.OpenTracingWorkerInterceptor;
+import io.temporal.samples.moneytransfer.web.ServerInfo;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Opt-in tracing, enabled with {@code TRACING_EXPORTER=jaeger} or {@code TRACING_EXPORTER=file}.
+ *
+ * <p>Temporal client and worker spans come from the temporal-opentracing interceptors, bridged to
+ * OpenTelemetry through the OpenTracing shim. HTTP spans on both sides of a call are linked
+ * through the W3C {@code traceparent} header. When tracing is off every span is a no-op.
+ */
+public class Tracing {
+
+  private static final String INSTRUMENTATION_NAME = "io.temporal.samples.moneytransfer";
+
+  private static final TextMapGetter<Function<String, String>> HEADER_GETTER =
+      new TextMapGetter<Function<String, String>>() {
+        @Override
+        public Iterable<String> keys(Function<String, String> headers) {
+          return Collections.emptyList();
+        }
+
+        @Override
+        public String get(Function<String, String> headers, String key) {
+          return headers != null ? headers.apply(key) : null;
+        }
+      };
+
+  private static OpenTelemetry openTelemetry = OpenTelemetry.noop();
+  private static OpenTracingOptions openTracingOptions;
+
+  /**
+   * Sets up the exporter configured through {@code TRACING_EXPORTER}, call before the first
+   * Temporal client is created.
+   */
+  public static synchronized void init(String serviceName) throws IOException {
+    String exporterName = ServerInfo.getTracingExporter();
+    if (exporterName.isEmpty() || openTracingOptions != null) {
+      return;
+    }
+
+    SpanExporter exporter;
+    if ("jaeger".equals(exporterName)) {
+      exporter =
+          JaegerGrpcSpanExporter.builder().setEndpoint(ServerInfo.getTracingEndpoint()).build();
+    } else if ("file".equals(exporterName)) {
+      exporter = new FileSpanExporter(Paths.get(ServerInfo.getTracingFile()));
+    } else {
+      throw new IllegalArgumentException("Unknown TRACING_EXPORTER: " + exporterName);
+    }
+
+    SdkTracerProvider tracerProvider =
+        SdkTracerProvider.builder()
+            .setResource(
+                Resource.getDefault()
+                    .merge(
+                        Resource.create(
+                            Attributes.of(ResourceAttributes.SERVICE_NAME, serviceName))))
+            .addSpanProcessor(BatchSpanProcessor.builder(exporter).build())
+            .build();
+    openTelemetry =
+        OpenTelemetrySdk.builder()
+            .setTracerProvider(tracerProvider)
+            .setPropagators(ContextPropagators.create(W3CTraceContextPropagator.getInstance()))
+            .build();
+    openTracingOptions =
+        OpenTracingOptions.newBuilder()
+            .setTracer(OpenTracingShim.createTracerShim(openTelemetry))
+            .build();
+
+    // export the spans still buffered when the process exits
+    Runtime.getRuntime()
+        .addShutdownHook(
+            new Thread(() -> tracerProvider.shutdown().join(10, TimeUnit.SECONDS)));
+    System.out.println("Tracing enabled, exporting to " + exporterName);
+  }
+
+  public static Tracer getTracer() {
+    return openTelemetry.getTracer(INSTRUMENTATION_NAME);
+  }
+
+  public static WorkflowClientInterceptor[] getClientInterceptors() {
+    return openTracingOptions == null
+        ? new WorkflowClientInterceptor[0]
+        : new WorkflowClientInterceptor[] {new OpenTracingClientInterceptor(openTracingOptions)};
+  }
+
+  public static WorkerInterceptor[] getWorkerInterceptors() {
+    return openTracingOptions == null
+        ? new WorkerInterceptor[0]
+        : new WorkerInterceptor[] {new OpenTracingWorkerInterceptor(openTracingOptions)};
+  }
+
+  /** Starts a server span that continues the trace in the request headers, if any. */
+  public static Span startServerSpan(String name, Function<String, String> headers) {
+    Context parent =
+        openTelemetry
+            .getPropagators()
+            .getTextMapPropagator()
+            .extract(Context.root(), headers, HEADER_GETTER);
+    return getTracer().spanBuilder(name).setParent(parent).setSpanKind(SpanKind.SERVER).startSpan();
+  }
+
+  /** Starts a client span under the current span, pass it to {@link #inject}. */
+  public static Span startClientSpan(String name) {
+    return getTracer().spanBuilder(name).setSpanKind(SpanKind.CLIENT).startSpan();
+  }
+
+  /** Adds the headers that make the server's span a child of {@code span}. */
+  public static void inject(Span span, BiConsumer<String, String> headers) {
+    openTelemetry
+        .getPropagators()
+        .getTextMapPropagator()
+        .inject(
+            Context.current().with(span),
+            headers,
+            (carrier, key, value) -> carrier.accept(key, value));
+  }
+
+  /** Runs tasks in the context (current span) of the thread that submitted them. */
+  public static ExecutorService wrap(ExecutorService executor) {
+    return Context.taskWrapping(executor);
+  }
+}
@@ -0,0 +1,181 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package io.temporal.samples.moneytransfer;
+
+import static io.temporal.samples.moneytransfer.TemporalClient.getWorkflowServiceStubs;
+import static io.temporal.samples.moneytransfer.TransferLister.getOneHourAgo;
+import static io.temporal.samples.moneytransfer.TransferLister.listExecutions;
+import static io.temporal.samples.moneytransfer.TransferLister.toWorkflowStatusObj;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Timestamp;
+import io.micrometer.core.instrument.Counter;
+import io.temporal.api.workflow.v1.WorkflowExecutionInfo;
+import io.temporal.samples.moneytransfer.dataclasses.WorkflowStatusObj;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In-memory index of the transfers started in the last hour.
+ *
+ * <p>The index is seeded with one full visibility listing and then kept current by only asking for
+ * executions that started or closed since the previous poll, so serving {@code /listWorkflows}
+ * costs nothing and keeping it current costs O(changes) rather than O(transfers). Until the seed
+ * listing succeeds, for example while visibility is unavailable at startup, requests are answered
+ * with a direct {@link TransferLister} query, so a visibility error reaches the caller.
+ */
+public class TransferIndex {
+
+  private static final Logger log = LoggerFactory.getLogger(TransferIndex.class);
+
+  // re-read this much before the last poll to absorb visibility lag and clock skew
+  private static final long OVERLAP_MILLIS = 10_000;
+
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+  private final CompletableFuture<Void> seeded = new CompletableFuture<>();
+  private final ScheduledExecutorService poller =
+      Executors.newSingleThreadScheduledExecutor(
+          runnable -> {
+            Thread thread = new Thread(runnable, "transfer-index-poller");
+            thread.setDaemon(true);
+            return thread;
+          });
+  private final long pollIntervalMillis;
+  private final Counter pollFailures =
+      Metrics.getRegistry().counter("moneytransfer.index.poll.failures");
+
+  // wall clock time at which the last successful poll started
+  private volatile long watermarkMillis;
+
+  public TransferIndex(long pollIntervalMillis) {
+    this.pollIntervalMillis = pollIntervalMillis;
+  }
+
+  public void start() {
+    poller.scheduleWithFixedDelay(this::poll, 0, pollIntervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  public void stop() {
+    poller.shutdownNow();
+  }
+
+  /**
+   * Transfers started in the last hour, newest first.
+   *
+   * @param status only return transfers in this status (e.g. RUNNING, COMPLETED), or null for all
+   */
+  public CompletableFuture<List<WorkflowStatusObj>> list(String status) {
+    if (!seeded.isDone()) {
+      return listFromVisibility(status);
+    }
+
+    long oldest = Instant.now().minus(1, ChronoUnit.HOURS).toEpochMilli();
+    return CompletableFuture.completedFuture(
+        entries.values().stream()
+            .filter(entry -> entry.startTimeMillis >= oldest)
+            .filter(entry -> hasStatus(entry.workflow, status))
+            .sorted(Comparator.comparingLong((Entry entry) -> entry.startTimeMillis).reversed())
+            .map(entry -> entry.workflow)
+            .collect(Collectors.toList()));
+  }
+
+  private static CompletableFuture<List<WorkflowStatusObj>> listFromVisibility(String status) {
+    CompletableFuture<List<WorkflowStatusObj>> workflows;
+    try {
+      workflows = TransferLister.listWorkflowsAsync();
+    } catch (IOException e) {
+      CompletableFuture<List<WorkflowStatusObj>> failed = new CompletableFuture<>();
+      failed.completeExceptionally(e);
+      return failed;
+    }
+    return workflows.thenApply(
+        list ->
+            list.stream()
+                .filter(workflow -> hasStatus(workflow, status))
+                .collect(Collectors.toList()));
+  }
+
+  private static boolean hasStatus(WorkflowStatusObj workflow, String status) {
+    return status == null || status.equalsIgnoreCase(workflow.getWorkflowStatus());
+  }
+
+  private void poll() {
+    long pollStartMillis = System.currentTimeMillis();
+
+    String query = "WorkflowType = 'moneyTransferWorkflow'";
+    if (seeded.isDone()) {
+      String since = Instant.ofEpochMilli(watermarkMillis - OVERLAP_MILLIS).toString();
+      query += " AND (StartTime > '" + since + "' OR CloseTime > '" + since + "')";
+    } else {
+      query += " AND StartTime > '" + getOneHourAgo() + "'";
+    }
+
+    try {
+      List<WorkflowExecutionInfo> executions =
+          listExecutions(getWorkflowServiceStubs(), query, ByteString.EMPTY, new ArrayList<>())
+              .join();
+      for (WorkflowExecutionInfo info : executions) {
+        entries.put(
+            info.getExecution().getRunId(),
+            new Entry(toWorkflowStatusObj(info), toMillis(info.getStartTime())));
+      }
+
+      evictExpired();
+      watermarkMillis = pollStartMillis;
+      seeded.complete(null);
+    } catch (Exception e) {
+      // keep the previous watermark so the next poll picks up what this one missed
+      pollFailures.increment();
+      log.warn("Transfer index poll failed, retrying in {} ms", pollIntervalMillis, e);
+    }
+  }
+
+  private void evictExpired() {
+    long oldest = Instant.now().minus(1, ChronoUnit.HOURS).toEpochMilli();
+    entries.values().removeIf(entry -> entry.startTimeMillis < oldest);
+  }
+
+  private static long toMillis(Timestamp timestamp) {
+    return timestamp.getSeconds() * 1000 + timestamp.getNanos() / 1_000_000;
+  }
+
+  private static final class Entry {
+    private final WorkflowStatusObj workflow;
+    private final long startTimeMillis;
+
+    Entry(WorkflowStatusObj workflow, long startTimeMillis) {
+      this.workflow = workflow;
+      this.startTimeMillis = startTimeMillis;
+    }
+  }
+}
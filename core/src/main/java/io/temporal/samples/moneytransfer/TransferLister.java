@@ -20,77 +20,247 @@
 package io.temporal.samples.moneytransfer;
 
 import static io.temporal.samples.moneytransfer.TemporalClient.getWorkflowServiceStubs;
+import static io.temporal.samples.moneytransfer.TemporalClient.toCompletableFuture;
 
 import com.google.common.base.Splitter;
-import com.google.protobuf.Timestamp;
-import io.temporal.api.filter.v1.StartTimeFilter;
-import io.temporal.api.filter.v1.WorkflowTypeFilter;
+import com.google.protobuf.ByteString;
 import io.temporal.api.workflow.v1.WorkflowExecutionInfo;
 import io.temporal.api.workflowservice.v1.*;
+import io.temporal.samples.moneytransfer.dataclasses.WorkflowListPageObj;
 import io.temporal.samples.moneytransfer.dataclasses.WorkflowStatusObj;
 import io.temporal.samples.moneytransfer.web.ServerInfo;
 import io.temporal.serviceclient.WorkflowServiceStubs;
 import java.io.FileNotFoundException;
 import java.time.Instant;
-import java.time.LocalDateTime;
-import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.net.ssl.SSLException;
 
 public class TransferLister {
 
+  private static final String RUNNING = "ExecutionStatus = 'Running'";
+  private static final String NOT_RUNNING = "ExecutionStatus != 'Running'";
+
+  // cursor part for a query that has no more pages
+  private static final String EXHAUSTED = "~";
+
+  // short-lived results keyed by cursor and page size, "" / 0 is the full list
+  private static final Map<String, CachedResult<?>> cache = new ConcurrentHashMap<>();
+
   public static List<WorkflowStatusObj> listWorkflows() throws FileNotFoundException, SSLException {
+    return listWorkflowsAsync().join();
+  }
+
+  /** Every transfer started in the last hour, open and closed executions fetched concurrently. */
+  public static CompletableFuture<List<WorkflowStatusObj>> listWorkflowsAsync()
+      throws FileNotFoundException, SSLException {
+    CachedResult<List<WorkflowStatusObj>> cached = getCached("");
+    if (cached != null) {
+      return cached.result;
+    }
 
     WorkflowServiceStubs service = getWorkflowServiceStubs();
-    ListOpenWorkflowExecutionsResponse responseOpen =
-        service
-            .blockingStub()
-            .listOpenWorkflowExecutions(
-                ListOpenWorkflowExecutionsRequest.newBuilder()
-                    .setStartTimeFilter(
-                        StartTimeFilter.newBuilder().setEarliestTime(getOneHourAgo()).build())
-                    .setTypeFilter(
-                        WorkflowTypeFilter.newBuilder().setName("moneyTransferWorkflow").build())
-                    .setNamespace(ServerInfo.getNamespace())
-                    .build());
-
-    ListClosedWorkflowExecutionsResponse responseClosed =
-        service
-            .blockingStub()
-            .listClosedWorkflowExecutions(
-                ListClosedWorkflowExecutionsRequest.newBuilder()
-                    .setStartTimeFilter(
-                        StartTimeFilter.newBuilder().setEarliestTime(getOneHourAgo()).build())
-                    .setTypeFilter(
-                        WorkflowTypeFilter.newBuilder().setName("moneyTransferWorkflow").build())
-                    .setNamespace(ServerInfo.getNamespace())
-                    .build());
-
-    // array of WorkflowStatusObj
-    List<WorkflowStatusObj> workflowStatusObjList = new ArrayList<>();
-
-    for (WorkflowExecutionInfo workflowExecutionInfo : responseOpen.getExecutionsList()) {
-      WorkflowStatusObj workflowStatusObjOpen = new WorkflowStatusObj();
-      workflowStatusObjOpen.setWorkflowId(workflowExecutionInfo.getExecution().getWorkflowId());
-      workflowStatusObjOpen.setWorkflowStatus(
-          getWorkflowStatus(workflowExecutionInfo.getStatus().toString()));
-      workflowStatusObjOpen.setUrl(
-          getWorkflowUrl(workflowExecutionInfo.getExecution().getWorkflowId()));
-      workflowStatusObjList.add(workflowStatusObjOpen);
+
+    String since = getOneHourAgo();
+    CompletableFuture<List<WorkflowStatusObj>> open =
+        listAllPages(service, getQuery(RUNNING, since), ByteString.EMPTY, new ArrayList<>());
+    CompletableFuture<List<WorkflowStatusObj>> closed =
+        listAllPages(service, getQuery(NOT_RUNNING, since), ByteString.EMPTY, new ArrayList<>());
+
+    CompletableFuture<List<WorkflowStatusObj>> result =
+        open.thenCombine(
+            closed,
+            (openList, closedList) -> {
+              // array of WorkflowStatusObj
+              List<WorkflowStatusObj> workflowStatusObjList = new ArrayList<>(openList);
+              workflowStatusObjList.addAll(closedList);
+              return workflowStatusObjList;
+            });
+    putCached("", result);
+    return result;
+  }
+
+  /**
+   * One page of transfers started in the last hour. Pass the {@code nextCursor} of the previous
+   * page to continue, or null to start from the beginning.
+   *
+   * @throws IllegalArgumentException if the cursor was not returned by this method
+   */
+  public static CompletableFuture<WorkflowListPageObj> listWorkflowsPageAsync(
+      String cursor, int pageSize) throws FileNotFoundException, SSLException {
+    String cacheKey = (cursor == null ? "" : cursor) + "/" + pageSize;
+    CachedResult<WorkflowListPageObj> cached = getCached(cacheKey);
+    if (cached != null) {
+      return cached.result;
     }
 
-    for (WorkflowExecutionInfo workflowExecutionInfo : responseClosed.getExecutionsList()) {
-      WorkflowStatusObj workflowStatusObjClosed = new WorkflowStatusObj();
-      workflowStatusObjClosed.setWorkflowId(workflowExecutionInfo.getExecution().getWorkflowId());
-      workflowStatusObjClosed.setWorkflowStatus(
-          getWorkflowStatus(workflowExecutionInfo.getStatus().toString()));
-      workflowStatusObjClosed.setUrl(
-          getWorkflowUrl(workflowExecutionInfo.getExecution().getWorkflowId()));
-      workflowStatusObjList.add(workflowStatusObjClosed);
+    // The cursor holds the start time bound of the first page, so every page runs the queries
+    // its page tokens came from, and one visibility page token each for open and closed executions.
+    Instant since = getOneHourAgoInstant();
+    String openToken = "";
+    String closedToken = "";
+    if (cursor != null && !cursor.isEmpty()) {
+      List<String> parts = Splitter.on('.').splitToList(cursor);
+      if (parts.size() != 3) {
+        throw new IllegalArgumentException("Invalid cursor: " + cursor);
+      }
+      try {
+        since = Instant.ofEpochSecond(Long.parseLong(parts.get(0)));
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+      }
+      openToken = parts.get(1);
+      closedToken = parts.get(2);
     }
 
-    return workflowStatusObjList;
+    boolean openDone = EXHAUSTED.equals(openToken);
+    boolean closedDone = EXHAUSTED.equals(closedToken);
+    // decoded before any call is made, so a malformed cursor fails the request up front
+    ByteString openPageToken = openDone ? ByteString.EMPTY : decodeToken(openToken);
+    ByteString closedPageToken = closedDone ? ByteString.EMPTY : decodeToken(closedToken);
+    // split the page between both queries while both still have results
+    int perQueryPageSize = openDone || closedDone ? pageSize : (pageSize + 1) / 2;
+
+    WorkflowServiceStubs service = getWorkflowServiceStubs();
+    String sinceBound = since.toString();
+    CompletableFuture<ListWorkflowExecutionsResponse> open =
+        openDone
+            ? CompletableFuture.completedFuture(ListWorkflowExecutionsResponse.getDefaultInstance())
+            : listPage(service, getQuery(RUNNING, sinceBound), openPageToken, perQueryPageSize);
+    CompletableFuture<ListWorkflowExecutionsResponse> closed =
+        closedDone
+            ? CompletableFuture.completedFuture(ListWorkflowExecutionsResponse.getDefaultInstance())
+            : listPage(
+                service, getQuery(NOT_RUNNING, sinceBound), closedPageToken, perQueryPageSize);
+
+    CompletableFuture<WorkflowListPageObj> result =
+        open.thenCombine(
+            closed,
+            (openResponse, closedResponse) -> {
+              List<WorkflowStatusObj> workflows = new ArrayList<>();
+              for (WorkflowExecutionInfo info : openResponse.getExecutionsList()) {
+                workflows.add(toWorkflowStatusObj(info));
+              }
+              for (WorkflowExecutionInfo info : closedResponse.getExecutionsList()) {
+                workflows.add(toWorkflowStatusObj(info));
+              }
+
+              String nextOpen = openDone ? EXHAUSTED : encodeToken(openResponse);
+              String nextClosed = closedDone ? EXHAUSTED : encodeToken(closedResponse);
+              String nextCursor =
+                  EXHAUSTED.equals(nextOpen) && EXHAUSTED.equals(nextClosed)
+                      ? null
+                      : since.getEpochSecond() + "." + nextOpen + "." + nextClosed;
+              return new WorkflowListPageObj(workflows, nextCursor);
+            });
+    putCached(cacheKey, result);
+    return result;
+  }
+
+  // follows next_page_token, appending each page as it arrives
+  private static CompletableFuture<List<WorkflowStatusObj>> listAllPages(
+      WorkflowServiceStubs service,
+      String query,
+      ByteString pageToken,
+      List<WorkflowStatusObj> workflowStatusObjList) {
+    return listExecutions(service, query, pageToken, new ArrayList<>())
+        .thenApply(
+            executions -> {
+              for (WorkflowExecutionInfo info : executions) {
+                workflowStatusObjList.add(toWorkflowStatusObj(info));
+              }
+              return workflowStatusObjList;
+            });
+  }
+
+  static CompletableFuture<List<WorkflowExecutionInfo>> listExecutions(
+      WorkflowServiceStubs service,
+      String query,
+      ByteString pageToken,
+      List<WorkflowExecutionInfo> executions) {
+    return listPage(service, query, pageToken, 0)
+        .thenCompose(
+            response -> {
+              executions.addAll(response.getExecutionsList());
+              if (response.getNextPageToken().isEmpty()) {
+                return CompletableFuture.completedFuture(executions);
+              }
+              return listExecutions(service, query, response.getNextPageToken(), executions);
+            });
+  }
+
+  private static CompletableFuture<ListWorkflowExecutionsResponse> listPage(
+      WorkflowServiceStubs service, String query, ByteString pageToken, int pageSize) {
+    ListWorkflowExecutionsRequest.Builder request =
+        ListWorkflowExecutionsRequest.newBuilder()
+            .setNamespace(ServerInfo.getNamespace())
+            .setQuery(query)
+            .setNextPageToken(pageToken);
+    if (pageSize > 0) {
+      request.setPageSize(pageSize);
+    }
+    return toCompletableFuture(service.futureStub().listWorkflowExecutions(request.build()));
+  }
+
+  private static String getQuery(String statusFilter, String since) {
+    return "WorkflowType = 'moneyTransferWorkflow' AND StartTime > '"
+        + since
+        + "' AND "
+        + statusFilter;
+  }
+
+  private static ByteString decodeToken(String token) {
+    if (token.isEmpty()) {
+      return ByteString.EMPTY;
+    }
+    try {
+      return ByteString.copyFrom(Base64.getUrlDecoder().decode(token));
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Invalid cursor page token: " + token, e);
+    }
+  }
+
+  private static String encodeToken(ListWorkflowExecutionsResponse response) {
+    ByteString token = response.getNextPageToken();
+    return token.isEmpty()
+        ? EXHAUSTED
+        : Base64.getUrlEncoder().withoutPadding().encodeToString(token.toByteArray());
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> CachedResult<T> getCached(String key) {
+    CachedResult<?> cached = cache.get(key);
+    if (cached == null
+        || cached.expiresAtMillis < System.currentTimeMillis()
+        || cached.result.isCompletedExceptionally()) {
+      return null;
+    }
+    return (CachedResult<T>) cached;
+  }
+
+  // caching the future, not the value, also lets concurrent refreshes share one fetch
+  private static <T> void putCached(String key, CompletableFuture<T> result) {
+    long now = System.currentTimeMillis();
+    for (Iterator<CachedResult<?>> it = cache.values().iterator(); it.hasNext(); ) {
+      if (it.next().expiresAtMillis < now) {
+        it.remove();
+      }
+    }
+    cache.put(key, new CachedResult<>(result, now + ServerInfo.getListCacheMillis()));
+  }
+
+  static WorkflowStatusObj toWorkflowStatusObj(WorkflowExecutionInfo info) {
+    WorkflowStatusObj workflowStatusObj = new WorkflowStatusObj();
+    workflowStatusObj.setWorkflowId(info.getExecution().getWorkflowId());
+    workflowStatusObj.setWorkflowStatus(getWorkflowStatus(info.getStatus().toString()));
+    workflowStatusObj.setUrl(getWorkflowUrl(info.getExecution().getWorkflowId()));
+    return workflowStatusObj;
   }
 
   // in the format the UI expects
@@ -104,24 +274,13 @@ public class TransferLister {
     return parts.get(parts.size() - 1); // Return the last part
   }
 
-  private static Timestamp getOneHourAgo() {
-    // Get current date-time in UTC
-    LocalDateTime now = LocalDateTime.now(ZoneId.of("UTC"));
-
-    // Subtract one hour
-    LocalDateTime oneHourAgo = now.minusHours(1);
-
-    // Convert LocalDateTime to Instant
-    Instant instant = oneHourAgo.atZone(ZoneId.of("UTC")).toInstant();
-
-    // Convert Instant to Timestamp
-    Timestamp timestamp =
-        Timestamp.newBuilder()
-            .setSeconds(instant.getEpochSecond())
-            .setNanos(instant.getNano())
-            .build();
+  // RFC 3339 timestamp as expected by visibility queries
+  static String getOneHourAgo() {
+    return getOneHourAgoInstant().toString();
+  }
 
-    return timestamp;
+  private static Instant getOneHourAgoInstant() {
+    return Instant.now().minus(1, ChronoUnit.HOURS).truncatedTo(ChronoUnit.SECONDS);
   }
 
   private static String getWorkflowUrl(String workflowId) {
@@ -136,6 +295,16 @@ public class TransferLister {
     return url;
   }
 
+  private static final class CachedResult<T> {
+    private final CompletableFuture<T> result;
+    private final long expiresAtMillis;
+
+    CachedResult(CompletableFuture<T> result, long expiresAtMillis) {
+      this.result = result;
+      this.expiresAtMillis = expiresAtMillis;
+    }
+  }
+
   public static void main(String[] args) throws FileNotFoundException, SSLException {
     List<WorkflowStatusObj> workflowStatusObjList = listWorkflows();
     for (WorkflowStatusObj workflowStatusObj : workflowStatusObjList) {
@@ -20,7 +20,10 @@
 package io.temporal.samples.moneytransfer;
 
 import static io.temporal.samples.moneytransfer.TemporalClient.getWorkflowServiceStubs;
+import static io.temporal.samples.moneytransfer.TemporalClient.toCompletableFuture;
 
+import io.grpc.Context;
+import io.grpc.Deadline;
 import io.temporal.api.common.v1.WorkflowExecution;
 import io.temporal.api.workflowservice.v1.DescribeWorkflowExecutionRequest;
 import io.temporal.api.workflowservice.v1.DescribeWorkflowExecutionResponse;
@@ -28,17 +31,41 @@ import io.temporal.api.workflowservice.v1.WorkflowServiceGrpc;
 import io.temporal.client.WorkflowClient;
 import io.temporal.client.WorkflowOptions;
 import io.temporal.client.WorkflowStub;
+import io.temporal.samples.moneytransfer.dataclasses.BatchProgressObj;
+import io.temporal.samples.moneytransfer.dataclasses.BatchTransferParameterObj;
 import io.temporal.samples.moneytransfer.dataclasses.ExecutionScenarioObj;
+import io.temporal.samples.moneytransfer.dataclasses.QueryResultObj;
 import io.temporal.samples.moneytransfer.dataclasses.ResultObj;
 import io.temporal.samples.moneytransfer.dataclasses.StateObj;
 import io.temporal.samples.moneytransfer.dataclasses.WorkflowParameterObj;
 import io.temporal.samples.moneytransfer.web.ServerInfo;
 import io.temporal.serviceclient.WorkflowServiceStubs;
 import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 import javax.net.ssl.SSLException;
 
 public class TransferRequester {
 
+  // runs the short blocking client calls (start, query, signal) off the web server's threads
+  private static final ExecutorService clientExecutor =
+      Tracing.wrap(
+          Executors.newFixedThreadPool(ServerInfo.getClientThreadCount(), daemonThreadFactory()));
+
+  // cancels batch query calls that pass their gRPC deadline
+  private static final ScheduledExecutorService deadlineScheduler =
+      Executors.newSingleThreadScheduledExecutor(daemonThreadFactory());
+
   public static ResultObj getWorkflowOutcome(String workflowId)
       throws FileNotFoundException, SSLException {
 
@@ -55,20 +82,162 @@ public class TransferRequester {
 
     WorkflowClient client = TemporalClient.get();
 
+    String workflowStatus = getWorkflowStatus(workflowId);
+
     // print workflow ID
-    System.out.println("Workflow STATUS: " + getWorkflowStatus(workflowId));
+    System.out.println("Workflow STATUS: " + workflowStatus);
 
     WorkflowStub workflowStub = client.newUntypedWorkflowStub(workflowId);
 
     StateObj result = workflowStub.query("transferStatus", StateObj.class);
 
-    if ("WORKFLOW_EXECUTION_STATUS_FAILED".equals(getWorkflowStatus(workflowId))) {
+    if ("WORKFLOW_EXECUTION_STATUS_FAILED".equals(workflowStatus)) {
       result.setWorkflowStatus("FAILED");
     }
 
     return result;
   }
 
+  public static CompletableFuture<ResultObj> getWorkflowOutcomeAsync(String workflowId)
+      throws FileNotFoundException, SSLException {
+
+    WorkflowClient client = TemporalClient.get();
+
+    WorkflowStub workflowStub = client.newUntypedWorkflowStub(workflowId);
+
+    // Completes when the Workflow completes, without holding a thread while waiting.
+    return workflowStub.getResultAsync(ResultObj.class);
+  }
+
+  public static CompletableFuture<StateObj> runQueryAsync(String workflowId)
+      throws FileNotFoundException, SSLException {
+
+    WorkflowClient client = TemporalClient.get();
+
+    CompletableFuture<String> workflowStatus = getWorkflowStatusAsync(workflowId);
+
+    CompletableFuture<StateObj> state =
+        CompletableFuture.supplyAsync(
+            () ->
+                client
+                    .newUntypedWorkflowStub(workflowId)
+                    .query("transferStatus", StateObj.class),
+            clientExecutor);
+
+    return workflowStatus.thenCombine(
+        state,
+        (status, result) -> {
+          System.out.println("Workflow STATUS: " + status);
+          if ("WORKFLOW_EXECUTION_STATUS_FAILED".equals(status)) {
+            result.setWorkflowStatus("FAILED");
+          }
+          return result;
+        });
+  }
+
+  /**
+   * Queries many transfers, at most {@code TEMPORAL_BATCH_QUERY_PARALLELISM} at a time and never
+   * more than there are client threads. Each item either carries its state or the error that
+   * stopped it, so one slow or missing transfer does not fail the whole batch.
+   */
+  public static CompletableFuture<List<QueryResultObj>> runQueryBatchAsync(
+      List<String> workflowIds) {
+    List<CompletableFuture<QueryResultObj>> results = new ArrayList<>();
+    for (int i = 0; i < workflowIds.size(); i++) {
+      results.add(new CompletableFuture<>());
+    }
+
+    AtomicInteger nextIndex = new AtomicInteger();
+    // more would only queue on clientExecutor
+    int parallelism =
+        Math.min(
+            Math.min(ServerInfo.getBatchQueryParallelism(), ServerInfo.getClientThreadCount()),
+            workflowIds.size());
+    for (int i = 0; i < parallelism; i++) {
+      runNextBatchQuery(workflowIds, results, nextIndex);
+    }
+
+    return CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0]))
+        .thenApply(v -> results.stream().map(CompletableFuture::join).collect(Collectors.toList()));
+  }
+
+  // each finished item starts the next one, which keeps the number of in-flight queries bounded
+  private static void runNextBatchQuery(
+      List<String> workflowIds,
+      List<CompletableFuture<QueryResultObj>> results,
+      AtomicInteger nextIndex) {
+    int index = nextIndex.getAndIncrement();
+    if (index >= workflowIds.size()) {
+      return;
+    }
+    String workflowId = workflowIds.get(index);
+
+    runQueryAsync(workflowId, ServerInfo.getBatchQueryTimeoutMillis())
+        .whenComplete(
+            (result, error) -> {
+              if (error == null) {
+                results.get(index).complete(new QueryResultObj(workflowId, result, null));
+              } else {
+                Throwable cause =
+                    error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause()
+                        : error;
+                results
+                    .get(index)
+                    .complete(new QueryResultObj(workflowId, null, cause.toString()));
+              }
+              runNextBatchQuery(workflowIds, results, nextIndex);
+            });
+  }
+
+  /**
+   * Like {@link #runQuery} on a client thread, with a gRPC deadline that starts when this is
+   * called, so time spent waiting for a client thread counts too. A query that reaches a thread
+   * after the deadline fails without being sent, and a call still running at the deadline is
+   * cancelled, so it does not keep its thread.
+   */
+  public static CompletableFuture<StateObj> runQueryAsync(String workflowId, long timeoutMillis) {
+    Deadline queryDeadline = Deadline.after(timeoutMillis, TimeUnit.MILLISECONDS);
+    return CompletableFuture.supplyAsync(
+        () -> {
+          if (queryDeadline.isExpired()) {
+            throw new CompletionException(
+                new TimeoutException("query timed out after " + timeoutMillis + "ms"));
+          }
+          Context.CancellableContext deadline =
+              Context.current().withDeadline(queryDeadline, deadlineScheduler);
+          try {
+            return deadline.call(() -> runQuery(workflowId));
+          } catch (Exception e) {
+            if (queryDeadline.isExpired()) {
+              throw new CompletionException(
+                  new TimeoutException("query timed out after " + timeoutMillis + "ms"));
+            }
+            throw e instanceof RuntimeException ? (RuntimeException) e : new CompletionException(e);
+          } finally {
+            deadline.cancel(null);
+          }
+        },
+        clientExecutor);
+  }
+
+  public static CompletableFuture<Void> runApproveSignalAsync(String workflowId) {
+    return CompletableFuture.runAsync(() -> runApproveSignal(workflowId), clientExecutor);
+  }
+
+  public static CompletableFuture<String> runWorkflowAsync(
+      WorkflowParameterObj workflowParameterObj) {
+    return CompletableFuture.supplyAsync(
+        () -> {
+          try {
+            return runWorkflow(workflowParameterObj);
+          } catch (FileNotFoundException | SSLException e) {
+            throw new RuntimeException(e);
+          }
+        },
+        clientExecutor);
+  }
+
   public static void runApproveSignal(String workflowId) {
 
     try {
@@ -87,25 +256,83 @@ public class TransferRequester {
     // generate a random reference number
     String referenceNumber = generateReferenceNumber(); // random reference number
 
-    // Workflow execution code
+    runWorkflow(
+        TemporalClient.get(), ServerInfo.getTaskqueue(), referenceNumber, workflowParameterObj);
+    System.out.printf("\n\nTransfer of $%d requested\n", workflowParameterObj.getAmount());
 
-    WorkflowClient client = TemporalClient.get();
-    final String TASK_QUEUE = ServerInfo.getTaskqueue();
+    return referenceNumber;
+  }
 
+  // starts a transfer with the given client, e.g. one for a test environment or a load test
+  public static void runWorkflow(
+      WorkflowClient client,
+      String taskQueue,
+      String referenceNumber,
+      WorkflowParameterObj workflowParameterObj) {
+    if (ServerInfo.isLocalValidate()) {
+      workflowParameterObj.setLocalValidate(true);
+    }
     WorkflowOptions options =
         WorkflowOptions.newBuilder()
             .setWorkflowId(referenceNumber)
-            .setTaskQueue(TASK_QUEUE)
+            .setTaskQueue(taskQueue)
             .build();
     AccountTransferWorkflow transferWorkflow =
         client.newWorkflowStub(AccountTransferWorkflow.class, options);
 
     WorkflowClient.start(transferWorkflow::transfer, workflowParameterObj);
-    System.out.printf("\n\nTransfer of $%d requested\n", workflowParameterObj.getAmount());
+  }
+
+  /**
+   * Starts a batch transfer.
+   *
+   * @throws IllegalArgumentException if the batch has no transfers, a transfer without a
+   *     scenario, or a negative concurrency
+   */
+  public static String runBatchWorkflow(BatchTransferParameterObj batchParameterObj)
+      throws FileNotFoundException, SSLException {
+    validateBatch(batchParameterObj);
+    String referenceNumber = "BATCH-" + generateReferenceNumber();
+
+    WorkflowClient client = TemporalClient.get();
+    WorkflowOptions options =
+        WorkflowOptions.newBuilder()
+            .setWorkflowId(referenceNumber)
+            .setTaskQueue(ServerInfo.getTaskqueue())
+            .build();
+    BatchTransferWorkflow batchWorkflow =
+        client.newWorkflowStub(BatchTransferWorkflow.class, options);
+
+    WorkflowClient.start(batchWorkflow::transfer, batchParameterObj);
+    System.out.printf(
+        "\n\nBatch of %d transfers requested\n", batchParameterObj.getTransfers().size());
 
     return referenceNumber;
   }
 
+  // checked before starting, a bad batch would otherwise only fail inside the workflow
+  static void validateBatch(BatchTransferParameterObj batchParameterObj) {
+    List<WorkflowParameterObj> transfers = batchParameterObj.getTransfers();
+    if (transfers == null || transfers.isEmpty()) {
+      throw new IllegalArgumentException("batch has no transfers");
+    }
+    for (int i = 0; i < transfers.size(); i++) {
+      if (transfers.get(i) == null || transfers.get(i).getScenario() == null) {
+        throw new IllegalArgumentException("transfer " + i + " has no scenario");
+      }
+    }
+    if (batchParameterObj.getConcurrency() < 0) {
+      throw new IllegalArgumentException(
+          "concurrency must not be negative, got " + batchParameterObj.getConcurrency());
+    }
+  }
+
+  public static BatchProgressObj getBatchProgress(String workflowId)
+      throws FileNotFoundException, SSLException {
+    WorkflowStub workflowStub = TemporalClient.get().newUntypedWorkflowStub(workflowId);
+    return workflowStub.query("batchProgress", BatchProgressObj.class);
+  }
+
   @SuppressWarnings("CatchAndPrintStackTrace")
   public static void main(String[] args) throws Exception {
 
@@ -146,4 +373,26 @@ public class TransferRequester {
     DescribeWorkflowExecutionResponse response = stub.describeWorkflowExecution(request);
     return response.getWorkflowExecutionInfo().getStatus().name();
   }
+
+  private static CompletableFuture<String> getWorkflowStatusAsync(String workflowId)
+      throws FileNotFoundException, SSLException {
+    WorkflowServiceStubs service = getWorkflowServiceStubs();
+    DescribeWorkflowExecutionRequest request =
+        DescribeWorkflowExecutionRequest.newBuilder()
+            .setNamespace(ServerInfo.getNamespace())
+            .setExecution(WorkflowExecution.newBuilder().setWorkflowId(workflowId))
+            .build();
+
+    return toCompletableFuture(service.futureStub().describeWorkflowExecution(request))
+        .thenApply(response -> response.getWorkflowExecutionInfo().getStatus().name());
+  }
+
+  private static ThreadFactory daemonThreadFactory() {
+    AtomicInteger threadNumber = new AtomicInteger();
+    return runnable -> {
+      Thread thread = new Thread(runnable, "transfer-client-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
 }
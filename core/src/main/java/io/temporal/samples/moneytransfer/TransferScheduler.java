@@ -57,14 +57,16 @@ public class TransferScheduler {
 
     WorkflowClient client = TemporalClient.get();
 
+    String workflowStatus = getWorkflowStatus(workflowId);
+
     // print workflow ID
-    System.out.println("Workflow STATUS: " + getWorkflowStatus(workflowId));
+    System.out.println("Workflow STATUS: " + workflowStatus);
 
     WorkflowStub workflowStub = client.newUntypedWorkflowStub(workflowId);
 
     StateObj result = workflowStub.query("transferStatus", StateObj.class);
 
-    if ("WORKFLOW_EXECUTION_STATUS_FAILED".equals(getWorkflowStatus(workflowId))) {
+    if ("WORKFLOW_EXECUTION_STATUS_FAILED".equals(workflowStatus)) {
       result.setWorkflowStatus("FAILED");
     }
 
@@ -80,6 +82,9 @@ public class TransferScheduler {
 
     WorkflowClient client = TemporalClient.get();
     final String TASK_QUEUE = ServerInfo.getTaskqueue();
+    if (ServerInfo.isLocalValidate()) {
+      workflowParameterObj.setLocalValidate(true);
+    }
 
     WorkflowOptions options =
         WorkflowOptions.newBuilder()
@@ -0,0 +1,131 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package io.temporal.samples.moneytransfer;
+
+import io.temporal.client.WorkflowClient;
+import io.temporal.samples.moneytransfer.dataclasses.ExecutionScenarioObj;
+import io.temporal.samples.moneytransfer.dataclasses.WorkflowParameterObj;
+import io.temporal.testing.TestEnvironmentOptions;
+import io.temporal.testing.TestWorkflowEnvironment;
+import io.temporal.worker.Worker;
+import io.temporal.worker.WorkerFactoryOptions;
+import io.temporal.worker.WorkerOptions;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares how many synchronous {@code withdraw} activities a worker keeps in flight under {@code
+ * API_DOWNTIME} with platform and with virtual activity threads.
+ *
+ * <p>Starts {@code transfers} API_DOWNTIME transfers against an in-process test server whose
+ * worker has one activity slot per transfer, and samples the number of bank calls in flight for
+ * {@code seconds}. The bank calls go to the web server's {@code /simulateDelay}, so start the web
+ * server first and raise the HTTP client limits so the dispatcher does not queue them:
+ *
+ * <pre>
+ * HTTP_MAX_REQUESTS=5000 HTTP_MAX_REQUESTS_PER_HOST=5000 ./gradlew -Pjava21 -q execute \
+ *   -PmainClass=io.temporal.samples.moneytransfer.WithdrawConcurrencyBenchmark \
+ *   -Parg="transfers=2000 seconds=15"
+ * </pre>
+ *
+ * <p>In both modes the HTTP call itself runs on an OkHttp dispatcher thread, which is always a
+ * platform thread; only the activity thread that waits for the response is virtual or not. The
+ * peak JVM thread count therefore includes one OkHttp thread per call in flight in both runs, and
+ * the difference between the runs is the activity threads alone. Virtual threads are not counted
+ * by the JVM thread count. Without {@code -Pjava21} only the platform thread run is done.
+ */
+public class WithdrawConcurrencyBenchmark {
+
+  private static final String TASK_QUEUE = "WithdrawConcurrencyBenchmark";
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> options = LoadGenerator.parseOptions(args);
+    int transfers = Integer.parseInt(options.getOrDefault("transfers", "1000"));
+    int seconds = Integer.parseInt(options.getOrDefault("seconds", "15"));
+
+    run(false, transfers, seconds);
+    if (AccountTransferWorker.isVirtualThreadsSupported()) {
+      run(true, transfers, seconds);
+    } else {
+      System.out.println("Skipping virtual threads, they need Java 21 (./gradlew -Pjava21)");
+    }
+
+    System.exit(0);
+  }
+
+  private static void run(boolean virtualThreads, int transfers, int seconds)
+      throws InterruptedException {
+    String mode = virtualThreads ? "virtual" : "platform";
+    ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    threadBean.resetPeakThreadCount();
+
+    TestWorkflowEnvironment testEnv =
+        TestWorkflowEnvironment.newInstance(
+            TestEnvironmentOptions.newBuilder()
+                .setUseTimeskipping(false)
+                .setWorkerFactoryOptions(
+                    WorkerFactoryOptions.newBuilder()
+                        .setUsingVirtualWorkflowThreads(virtualThreads)
+                        .build())
+                .build());
+    Worker worker =
+        testEnv.newWorker(
+            TASK_QUEUE,
+            WorkerOptions.newBuilder()
+                .setUsingVirtualThreads(virtualThreads)
+                .setMaxConcurrentActivityExecutionSize(transfers)
+                .build());
+    worker.registerWorkflowImplementationTypes(AccountTransferWorkflowImpl.class);
+    worker.registerActivitiesImplementations(new AccountTransferActivitiesImpl());
+    testEnv.start();
+
+    WorkflowClient client = testEnv.getWorkflowClient();
+    for (int i = 0; i < transfers; i++) {
+      TransferRequester.runWorkflow(
+          client,
+          TASK_QUEUE,
+          "WITHDRAW-BENCHMARK-" + mode + "-" + i,
+          new WorkflowParameterObj(100, ExecutionScenarioObj.API_DOWNTIME));
+    }
+
+    int maxInFlight = 0;
+    long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+    while (System.nanoTime() < end) {
+      maxInFlight = Math.max(maxInFlight, BankingApiClient.getInFlightCalls());
+      TimeUnit.MILLISECONDS.sleep(50);
+    }
+    int peakThreads = threadBean.getPeakThreadCount();
+    Runtime runtime = Runtime.getRuntime();
+    long heapMb = (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024);
+
+    testEnv.close();
+    // let abandoned calls time out so they are not counted in the next run
+    long drainEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (BankingApiClient.getInFlightCalls() > 0 && System.nanoTime() < drainEnd) {
+      TimeUnit.MILLISECONDS.sleep(100);
+    }
+
+    System.out.printf(
+        "%-8s threads: max %5d of %d withdraw calls in flight, peak %5d JVM threads, %5d MB heap%n",
+        mode, maxInFlight, transfers, peakThreads, heapMb);
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package io.temporal.samples.moneytransfer;
+
+import io.temporal.samples.moneytransfer.web.ServerInfo;
+import io.temporal.worker.WorkerFactoryOptions;
+import io.temporal.worker.WorkerOptions;
+import io.temporal.worker.tuning.ActivitySlotInfo;
+import io.temporal.worker.tuning.CompositeTuner;
+import io.temporal.worker.tuning.FixedSizeSlotSupplier;
+import io.temporal.worker.tuning.LocalActivitySlotInfo;
+import io.temporal.worker.tuning.ResourceBasedController;
+import io.temporal.worker.tuning.ResourceBasedControllerOptions;
+import io.temporal.worker.tuning.ResourceBasedSlotOptions;
+import io.temporal.worker.tuning.ResourceBasedSlotSupplier;
+import io.temporal.worker.tuning.ResourceBasedTuner;
+import io.temporal.worker.tuning.SlotSupplier;
+import io.temporal.worker.tuning.WorkerTuner;
+import io.temporal.worker.tuning.WorkflowSlotInfo;
+import java.time.Duration;
+
+/**
+ * Builds worker and worker factory options from the {@code WORKER_*} environment variables, so
+ * slots, pollers and the sticky cache can be tuned per deployment. See worker-auto-tuning.md.
+ */
+public class WorkerTuning {
+
+  // same bounds the SDK's ResourceBasedTuner uses by default
+  private static final ResourceBasedSlotOptions WORKFLOW_SLOT_OPTIONS =
+      ResourceBasedSlotOptions.newBuilder()
+          .setMinimumSlots(5)
+          .setMaximumSlots(1000)
+          .setRampThrottle(Duration.ZERO)
+          .build();
+  private static final ResourceBasedSlotOptions ACTIVITY_SLOT_OPTIONS =
+      ResourceBasedSlotOptions.newBuilder()
+          .setMinimumSlots(1)
+          .setMaximumSlots(1000)
+          .setRampThrottle(Duration.ofMillis(50))
+          .build();
+
+  public static WorkerOptions.Builder newWorkerOptionsBuilder() {
+    WorkerOptions.Builder builder = WorkerOptions.newBuilder().setWorkerTuner(newWorkerTuner());
+    if (ServerInfo.getWorkerWorkflowPollers() > 0) {
+      builder.setMaxConcurrentWorkflowTaskPollers(ServerInfo.getWorkerWorkflowPollers());
+    }
+    if (ServerInfo.getWorkerActivityPollers() > 0) {
+      builder.setMaxConcurrentActivityTaskPollers(ServerInfo.getWorkerActivityPollers());
+    }
+    return builder;
+  }
+
+  public static WorkerFactoryOptions.Builder newWorkerFactoryOptionsBuilder() {
+    WorkerFactoryOptions.Builder builder = WorkerFactoryOptions.newBuilder();
+    if (ServerInfo.getWorkerStickyCacheSize() > 0) {
+      builder.setWorkflowCacheSize(ServerInfo.getWorkerStickyCacheSize());
+    }
+    return builder;
+  }
+
+  static WorkerTuner newWorkerTuner() {
+    String tuner = ServerInfo.getWorkerTuner();
+    switch (tuner) {
+      case "resource":
+        return ResourceBasedTuner.newBuilder().setControllerOptions(newControllerOptions()).build();
+      case "fixed":
+        return new CompositeTuner(
+            new FixedSizeSlotSupplier<>(ServerInfo.getWorkerWorkflowSlots()),
+            new FixedSizeSlotSupplier<>(ServerInfo.getWorkerActivitySlots()),
+            new FixedSizeSlotSupplier<>(ServerInfo.getWorkerLocalActivitySlots()));
+      case "composite":
+        // resource-based suppliers share one controller, so together they stay within the target
+        ResourceBasedController controller =
+            ResourceBasedController.newSystemInfoController(newControllerOptions());
+        return new CompositeTuner(
+            newWorkflowSlotSupplier(controller),
+            newActivitySlotSupplier(controller),
+            newLocalActivitySlotSupplier(controller));
+      default:
+        throw new IllegalArgumentException("Unknown WORKER_TUNER: " + tuner);
+    }
+  }
+
+  private static ResourceBasedControllerOptions newControllerOptions() {
+    return ResourceBasedControllerOptions.newBuilder(
+            ServerInfo.getWorkerTargetMemory(), ServerInfo.getWorkerTargetCpu())
+        .build();
+  }
+
+  private static SlotSupplier<WorkflowSlotInfo> newWorkflowSlotSupplier(
+      ResourceBasedController controller) {
+    if (isResourceBased(ServerInfo.getWorkerWorkflowSlotSupplier())) {
+      return ResourceBasedSlotSupplier.createForWorkflow(controller, WORKFLOW_SLOT_OPTIONS);
+    }
+    return new FixedSizeSlotSupplier<>(ServerInfo.getWorkerWorkflowSlots());
+  }
+
+  private static SlotSupplier<ActivitySlotInfo> newActivitySlotSupplier(
+      ResourceBasedController controller) {
+    if (isResourceBased(ServerInfo.getWorkerActivitySlotSupplier())) {
+      return ResourceBasedSlotSupplier.createForActivity(controller, ACTIVITY_SLOT_OPTIONS);
+    }
+    return new FixedSizeSlotSupplier<>(ServerInfo.getWorkerActivitySlots());
+  }
+
+  private static SlotSupplier<LocalActivitySlotInfo> newLocalActivitySlotSupplier(
+      ResourceBasedController controller) {
+    if (isResourceBased(ServerInfo.getWorkerLocalActivitySlotSupplier())) {
+      return ResourceBasedSlotSupplier.createForLocalActivity(controller, ACTIVITY_SLOT_OPTIONS);
+    }
+    return new FixedSizeSlotSupplier<>(ServerInfo.getWorkerLocalActivitySlots());
+  }
+
+  private static boolean isResourceBased(String supplier) {
+    if ("resource".equals(supplier)) {
+      return true;
+    }
+    if ("fixed".equals(supplier)) {
+      return false;
+    }
+    throw new IllegalArgumentException("Slot supplier must be fixed or resource, got " + supplier);
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package io.temporal.samples.moneytransfer.dataclasses;
+
+public class BatchItemResultObj {
+  private int index; // position in the batch's transfer list
+  private String chargeId; // null if the transfer failed
+  private String error; // null if the transfer succeeded
+
+  // no-arg constructor
+  public BatchItemResultObj() {}
+
+  public BatchItemResultObj(int index, String chargeId, String error) {
+    this.index = index;
+    this.chargeId = chargeId;
+    this.error = error;
+  }
+
+  // getters and setters
+  public int getIndex() {
+    return index;
+  }
+
+  public String getChargeId() {
+    return chargeId;
+  }
+
+  public String getError() {
+    return error;
+  }
+
+  public void setIndex(int index) {
+    this.index = index;
+  }
+
+  public void setChargeId(String chargeId) {
+    this.chargeId = chargeId;
+  }
+
+  public void setError(String error) {
+    this.error = error;
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package io.temporal.samples.moneytransfer.dataclasses;
+
+public class BatchProgressObj {
+  private int total;
+  private int completed;
+  private int succeeded;
+  private int failed;
+
+  // no-arg constructor
+  public BatchProgressObj() {}
+
+  public BatchProgressObj(int total, int completed, int succeeded, int failed) {
+    this.total = total;
+    this.completed = completed;
+    this.succeeded = succeeded;
+    this.failed = failed;
+  }
+
+  // getters and setters
+  public int getTotal() {
+    return total;
+  }
+
+  public int getCompleted() {
+    return completed;
+  }
+
+  public int getSucceeded() {
+    return succeeded;
+  }
+
+  public int getFailed() {
+    return failed;
+  }
+
+  public void setTotal(int total) {
+    this.total = total;
+  }
+
+  public void setCompleted(int completed) {
+    this.completed = completed;
+  }
+
+  public void setSucceeded(int succeeded) {
+    this.succeeded = succeeded;
+  }
+
+  public void setFailed(int failed) {
+    this.failed = failed;
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package io.temporal.samples.moneytransfer.dataclasses;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class BatchTransferParameterObj {
+  // transfers not yet settled; when continuing as new only the remaining slice is passed on
+  private List<WorkflowParameterObj> transfers = new ArrayList<>();
+
+  // maximum number of transfers in flight at once
+  private int concurrency;
+
+  // set when continuing as new: counts of the previous runs and their first failures
+  private BatchProgressObj progress;
+  private List<BatchItemResultObj> failures = new ArrayList<>();
+
+  // no-arg constructor
+  public BatchTransferParameterObj() {}
+
+  public BatchTransferParameterObj(List<WorkflowParameterObj> transfers, int concurrency) {
+    this.transfers = transfers;
+    this.concurrency = concurrency;
+  }
+
+  public BatchTransferParameterObj(
+      List<WorkflowParameterObj> transfers,
+      int concurrency,
+      BatchProgressObj progress,
+      List<BatchItemResultObj> failures) {
+    this.transfers = transfers;
+    this.concurrency = concurrency;
+    this.progress = progress;
+    this.failures = failures;
+  }
+
+  // getters and setters
+  public List<WorkflowParameterObj> getTransfers() {
+    return transfers;
+  }
+
+  public int getConcurrency() {
+    return concurrency;
+  }
+
+  public BatchProgressObj getProgress() {
+    return progress;
+  }
+
+  public List<BatchItemResultObj> getFailures() {
+    return failures;
+  }
+
+  public void setTransfers(List<WorkflowParameterObj> transfers) {
+    this.transfers = transfers;
+  }
+
+  public void setConcurrency(int concurrency) {
+    this.concurrency = concurrency;
+  }
+
+  public void setProgress(BatchProgressObj progress) {
+    this.progress = progress;
+  }
+
+  public void setFailures(List<BatchItemResultObj> failures) {
+    this.failures = failures;
+  }
+}
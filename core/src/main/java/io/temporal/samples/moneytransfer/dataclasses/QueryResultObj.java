@@ -0,0 +1,60 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package io.temporal.samples.moneytransfer.dataclasses;
+
+public class QueryResultObj {
+  private String workflowId;
+  private StateObj state; // null if the query failed
+  private String error; // null if the query succeeded
+
+  // no-arg constructor
+  public QueryResultObj() {}
+
+  public QueryResultObj(String workflowId, StateObj state, String error) {
+    this.workflowId = workflowId;
+    this.state = state;
+    this.error = error;
+  }
+
+  // getters and setters
+  public String getWorkflowId() {
+    return workflowId;
+  }
+
+  public StateObj getState() {
+    return state;
+  }
+
+  public String getError() {
+    return error;
+  }
+
+  public void setWorkflowId(String workflowId) {
+    this.workflowId = workflowId;
+  }
+
+  public void setState(StateObj state) {
+    this.state = state;
+  }
+
+  public void setError(String error) {
+    this.error = error;
+  }
+}
@@ -0,0 +1,52 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package io.temporal.samples.moneytransfer.dataclasses;
+
+import java.util.List;
+
+public class WorkflowListPageObj {
+  private List<WorkflowStatusObj> workflows;
+  private String nextCursor; // null on the last page
+
+  // no-arg constructor
+  public WorkflowListPageObj() {}
+
+  public WorkflowListPageObj(List<WorkflowStatusObj> workflows, String nextCursor) {
+    this.workflows = workflows;
+    this.nextCursor = nextCursor;
+  }
+
+  // getters and setters
+  public List<WorkflowStatusObj> getWorkflows() {
+    return workflows;
+  }
+
+  public String getNextCursor() {
+    return nextCursor;
+  }
+
+  public void setWorkflows(List<WorkflowStatusObj> workflows) {
+    this.workflows = workflows;
+  }
+
+  public void setNextCursor(String nextCursor) {
+    this.nextCursor = nextCursor;
+  }
+}
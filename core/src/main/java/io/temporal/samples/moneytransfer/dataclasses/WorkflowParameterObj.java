@@ -28,6 +28,10 @@ public class WorkflowParameterObj {
 
   private ExecutionScenarioObj scenario;
 
+  // run validate as a local activity, chosen when the transfer starts so that replay always
+  // takes the same path, absent (false) in transfers started before this option existed
+  private boolean localValidate;
+
   // No-arg constructor
   public WorkflowParameterObj() {}
 
@@ -49,6 +53,10 @@ public class WorkflowParameterObj {
     return scenario;
   }
 
+  public boolean isLocalValidate() {
+    return localValidate;
+  }
+
   // Setters
   public void setAmount(int amount) {
     this.amount = amount;
@@ -57,4 +65,8 @@ public class WorkflowParameterObj {
   public void setScenario(ExecutionScenarioObj scenario) {
     this.scenario = scenario;
   }
+
+  public void setLocalValidate(boolean localValidate) {
+    this.localValidate = localValidate;
+  }
 }
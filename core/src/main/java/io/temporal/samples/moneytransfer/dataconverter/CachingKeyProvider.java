@@ -0,0 +1,64 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package io.temporal.samples.moneytransfer.dataconverter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.crypto.SecretKey;
+
+/** Keeps the most recently used keys of another provider in memory. */
+public class CachingKeyProvider implements KeyProvider {
+  private final KeyProvider delegate;
+  private final Map<String, SecretKey> keys;
+
+  public CachingKeyProvider(KeyProvider delegate, int maxKeys) {
+    this.delegate = delegate;
+    // access ordered, so the least recently used key is evicted first
+    this.keys =
+        new LinkedHashMap<String, SecretKey>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, SecretKey> eldest) {
+            return size() > maxKeys;
+          }
+        };
+  }
+
+  @Override
+  public String getCurrentKeyId() {
+    return delegate.getCurrentKeyId();
+  }
+
+  @Override
+  public SecretKey getKey(String keyId) {
+    synchronized (keys) {
+      SecretKey key = keys.get(keyId);
+      if (key != null) {
+        return key;
+      }
+    }
+
+    // resolved outside the lock so a slow provider does not block cached lookups
+    SecretKey key = delegate.getKey(keyId);
+    synchronized (keys) {
+      keys.put(keyId, key);
+    }
+    return key;
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package io.temporal.samples.moneytransfer.dataconverter;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import io.temporal.api.common.v1.Payload;
+import io.temporal.common.converter.DataConverterException;
+import io.temporal.common.converter.EncodingKeys;
+import io.temporal.payload.codec.PayloadCodec;
+import io.temporal.payload.codec.PayloadCodecException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Compresses payloads with zlib. Chain it so it runs before {@link CryptCodec}, encrypted data
+ * does not compress.
+ *
+ * <p>Payloads smaller than the threshold, and payloads that do not get smaller, are passed through
+ * unchanged. Decoding only touches payloads marked with the {@code binary/zlib} encoding, and fails
+ * payloads that inflate beyond a size limit, as the codec server decodes untrusted input.
+ */
+public class CompressionCodec implements PayloadCodec {
+  static final ByteString METADATA_ENCODING =
+      ByteString.copyFrom("binary/zlib", StandardCharsets.UTF_8);
+
+  // Deflater holds native memory and is expensive to create, so pool them and free the native
+  // memory of any that do not fit back in the pool
+  private static final ObjectPool<Deflater> deflaters =
+      new ObjectPool<>(
+          Runtime.getRuntime().availableProcessors() * 2,
+          () -> new Deflater(Deflater.BEST_SPEED),
+          Deflater::end);
+
+  static final int DEFAULT_MAX_DECODED_BYTES = 16 * 1024 * 1024;
+
+  private final int thresholdBytes;
+  private final int maxDecodedBytes;
+
+  public CompressionCodec(int thresholdBytes) {
+    this(thresholdBytes, DEFAULT_MAX_DECODED_BYTES);
+  }
+
+  public CompressionCodec(int thresholdBytes, int maxDecodedBytes) {
+    this.thresholdBytes = thresholdBytes;
+    this.maxDecodedBytes = maxDecodedBytes;
+  }
+
+  @NotNull
+  @Override
+  public List<Payload> encode(@NotNull List<Payload> payloads) {
+    List<Payload> encoded = new ArrayList<>(payloads.size());
+    for (Payload payload : payloads) {
+      encoded.add(encodePayload(payload));
+    }
+    return encoded;
+  }
+
+  @NotNull
+  @Override
+  public List<Payload> decode(@NotNull List<Payload> payloads) {
+    List<Payload> decoded = new ArrayList<>(payloads.size());
+    for (Payload payload : payloads) {
+      decoded.add(decodePayload(payload));
+    }
+    return decoded;
+  }
+
+  private Payload encodePayload(Payload payload) {
+    int size = payload.getSerializedSize();
+    if (size < thresholdBytes) {
+      return payload;
+    }
+
+    Deflater deflater = deflaters.borrow();
+    deflater.reset();
+    ByteString.Output compressed = ByteString.newOutput(size / 2);
+    try (DeflaterOutputStream out = new DeflaterOutputStream(compressed, deflater)) {
+      payload.writeTo(out);
+    } catch (IOException e) {
+      throw new DataConverterException(e);
+    } finally {
+      deflaters.release(deflater);
+    }
+
+    if (compressed.size() >= size) {
+      return payload;
+    }
+
+    return Payload.newBuilder()
+        .putMetadata(EncodingKeys.METADATA_ENCODING_KEY, METADATA_ENCODING)
+        .setData(compressed.toByteString())
+        .build();
+  }
+
+  private Payload decodePayload(Payload payload) {
+    if (!METADATA_ENCODING.equals(
+        payload.getMetadataOrDefault(EncodingKeys.METADATA_ENCODING_KEY, null))) {
+      return payload;
+    }
+
+    // stops inflating once the limit is reached, so a small crafted payload can't expand unbounded
+    try (InputStream in = new InflaterInputStream(payload.getData().newInput())) {
+      CodedInputStream coded = CodedInputStream.newInstance(in);
+      coded.setSizeLimit(maxDecodedBytes);
+      return Payload.parseFrom(coded);
+    } catch (IOException e) {
+      throw new PayloadCodecException(e);
+    }
+  }
+}
@@ -20,21 +20,27 @@
 package io.temporal.samples.moneytransfer.dataconverter;
 
 import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.UnsafeByteOperations;
 import io.temporal.api.common.v1.Payload;
 import io.temporal.common.converter.DataConverterException;
 import io.temporal.common.converter.EncodingKeys;
 import io.temporal.payload.codec.PayloadCodec;
 import io.temporal.payload.codec.PayloadCodecException;
+import io.temporal.samples.moneytransfer.web.ServerInfo;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
 import java.security.SecureRandom;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.crypto.Cipher;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.GCMParameterSpec;
-import javax.crypto.spec.SecretKeySpec;
 import org.jetbrains.annotations.NotNull;
 
 public class CryptCodec implements PayloadCodec {
@@ -53,23 +59,61 @@ public class CryptCodec implements PayloadCodec {
   private static final int GCM_TAG_LENGTH_BIT = 128;
   private static final Charset UTF_8 = StandardCharsets.UTF_8;
 
+  private static final int MAX_CACHED_KEYS = 100;
+
+  // SecureRandom is thread safe, and seeding a new one per payload is expensive
+  private static final SecureRandom random = new SecureRandom();
+
+  // Cipher instances are not thread safe but are costly to look up, so pool them
+  private static final ObjectPool<Cipher> ciphers =
+      new ObjectPool<>(
+          Runtime.getRuntime().availableProcessors() * 2,
+          () -> {
+            try {
+              return Cipher.getInstance(CIPHER);
+            } catch (GeneralSecurityException e) {
+              throw new IllegalStateException(e);
+            }
+          },
+          cipher -> {});
+
+  private final KeyProvider keyProvider;
+  private final Map<String, ByteString> keyIds = new ConcurrentHashMap<>();
+
+  /** Uses the key provider configured through ENCRYPTION_KEY_DIR / ENCRYPTION_KEY_ID. */
+  public CryptCodec() {
+    this(new CachingKeyProvider(getConfiguredKeyProvider(), MAX_CACHED_KEYS));
+  }
+
+  public CryptCodec(KeyProvider keyProvider) {
+    this.keyProvider = keyProvider;
+  }
+
   @NotNull
   @Override
   public List<Payload> encode(@NotNull List<Payload> payloads) {
-    return payloads.stream().map(this::encodePayload).collect(Collectors.toList());
+    List<Payload> encoded = new ArrayList<>(payloads.size());
+    for (Payload payload : payloads) {
+      encoded.add(encodePayload(payload));
+    }
+    return encoded;
   }
 
   @NotNull
   @Override
   public List<Payload> decode(@NotNull List<Payload> payloads) {
-    return payloads.stream().map(this::decodePayload).collect(Collectors.toList());
+    List<Payload> decoded = new ArrayList<>(payloads.size());
+    for (Payload payload : payloads) {
+      decoded.add(decodePayload(payload));
+    }
+    return decoded;
   }
 
   private Payload encodePayload(Payload payload) {
     String keyId = getKeyId();
     SecretKey key = getKey(keyId);
 
-    byte[] encryptedData;
+    ByteString encryptedData;
     try {
       encryptedData = encrypt(payload.toByteArray(), key);
     } catch (Throwable e) {
@@ -79,8 +123,10 @@ public class CryptCodec implements PayloadCodec {
     return Payload.newBuilder()
         .putMetadata(EncodingKeys.METADATA_ENCODING_KEY, METADATA_ENCODING)
         .putMetadata(METADATA_ENCRYPTION_CIPHER_KEY, METADATA_ENCRYPTION_CIPHER)
-        .putMetadata(METADATA_ENCRYPTION_KEY_ID_KEY, ByteString.copyFromUtf8(keyId))
-        .setData(ByteString.copyFrom(encryptedData))
+        .putMetadata(
+            METADATA_ENCRYPTION_KEY_ID_KEY,
+            keyIds.computeIfAbsent(keyId, ByteString::copyFromUtf8))
+        .setData(encryptedData)
         .build();
   }
 
@@ -93,15 +139,9 @@ public class CryptCodec implements PayloadCodec {
       } catch (Exception e) {
         throw new PayloadCodecException(e);
       }
-      SecretKey key = getKey(keyId);
-
-      byte[] plainData;
-      Payload decryptedPayload;
-
       try {
-        plainData = decrypt(payload.getData().toByteArray(), key);
-        decryptedPayload = Payload.parseFrom(plainData);
-        return decryptedPayload;
+        SecretKey key = getKey(keyId);
+        return decrypt(payload.getData(), key);
       } catch (Throwable e) {
         throw new PayloadCodecException(e);
       }
@@ -111,50 +151,66 @@ public class CryptCodec implements PayloadCodec {
   }
 
   private String getKeyId() {
-    // Currently there is no context available to vary which key is used.
-    // Use a fixed key for all payloads.
-    // This still supports key rotation as the key ID is recorded on payloads allowing
-    // decryption to use a previous key.
-
-    return "sa-rocks!sa-rocks!sa-rocks!yeah!";
+    // The key ID is recorded on payloads, which supports key rotation: decryption
+    // looks up the key a payload was written with rather than the current one.
+    return keyProvider.getCurrentKeyId();
   }
 
   private SecretKey getKey(String keyId) {
-    // Key must be fetched from KMS or other secure storage.
-    // Hard coded here only for example purposes.
-    return new SecretKeySpec(keyId.getBytes(UTF_8), "AES");
+    return keyProvider.getKey(keyId);
+  }
+
+  private static KeyProvider getConfiguredKeyProvider() {
+    if (!ServerInfo.getEncryptionKeyDir().isEmpty()) {
+      return new FileKeyProvider(
+          Paths.get(ServerInfo.getEncryptionKeyDir()), ServerInfo.getEncryptionKeyId());
+    }
+    return new StaticKeyProvider();
   }
 
   private static byte[] getNonce(int size) {
     byte[] nonce = new byte[size];
-    new SecureRandom().nextBytes(nonce);
+    random.nextBytes(nonce);
     return nonce;
   }
 
-  private byte[] encrypt(byte[] plainData, SecretKey key) throws Exception {
+  // nonce and ciphertext are written into one array which is wrapped without copying
+  private ByteString encrypt(byte[] plainData, SecretKey key) throws Exception {
     byte[] nonce = getNonce(GCM_NONCE_LENGTH_BYTE);
 
-    Cipher cipher = Cipher.getInstance(CIPHER);
-    cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_LENGTH_BIT, nonce));
+    Cipher cipher = ciphers.borrow();
+    try {
+      cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_LENGTH_BIT, nonce));
+
+      byte[] encryptedData = new byte[nonce.length + cipher.getOutputSize(plainData.length)];
+      System.arraycopy(nonce, 0, encryptedData, 0, nonce.length);
+      int length = cipher.doFinal(plainData, 0, plainData.length, encryptedData, nonce.length);
 
-    byte[] encryptedData = cipher.doFinal(plainData);
-    return ByteBuffer.allocate(nonce.length + encryptedData.length)
-        .put(nonce)
-        .put(encryptedData)
-        .array();
+      return UnsafeByteOperations.unsafeWrap(encryptedData, 0, nonce.length + length);
+    } finally {
+      ciphers.release(cipher);
+    }
   }
 
-  private byte[] decrypt(byte[] encryptedDataWithNonce, SecretKey key) throws Exception {
-    ByteBuffer buffer = ByteBuffer.wrap(encryptedDataWithNonce);
+  // reads nonce and ciphertext straight from the payload data instead of copying them out first
+  private Payload decrypt(ByteString encryptedDataWithNonce, SecretKey key)
+      throws GeneralSecurityException, InvalidProtocolBufferException {
+    byte[] nonce = encryptedDataWithNonce.substring(0, GCM_NONCE_LENGTH_BYTE).toByteArray();
+    ByteBuffer encryptedData =
+        encryptedDataWithNonce.substring(GCM_NONCE_LENGTH_BYTE).asReadOnlyByteBuffer();
 
-    byte[] nonce = new byte[GCM_NONCE_LENGTH_BYTE];
-    buffer.get(nonce);
-    byte[] encryptedData = new byte[buffer.remaining()];
-    buffer.get(encryptedData);
+    ByteBuffer plainData;
+    Cipher cipher = ciphers.borrow();
+    try {
+      cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_LENGTH_BIT, nonce));
 
-    Cipher cipher = Cipher.getInstance(CIPHER);
-    cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_LENGTH_BIT, nonce));
+      plainData = ByteBuffer.allocate(cipher.getOutputSize(encryptedData.remaining()));
+      cipher.doFinal(encryptedData, plainData);
+      plainData.flip();
+    } finally {
+      ciphers.release(cipher);
+    }
 
-    return cipher.doFinal(encryptedData);
+    return Payload.parseFrom(plainData);
   }
 }
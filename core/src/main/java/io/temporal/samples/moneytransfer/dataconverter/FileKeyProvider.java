@@ -0,0 +1,72 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package io.temporal.samples.moneytransfer.dataconverter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.regex.Pattern;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Reads AES keys from a directory, one {@code <keyId>.key} file per key holding the base64 encoded
+ * 16, 24 or 32 byte key. Stands in for a KMS in local testing: rotate by adding a new key file and
+ * switching the current key ID, keeping the old files for existing payloads.
+ */
+public class FileKeyProvider implements KeyProvider {
+  private static final Pattern KEY_ID = Pattern.compile("[A-Za-z0-9._-]+");
+
+  private final Path directory;
+  private final String currentKeyId;
+
+  public FileKeyProvider(Path directory, String currentKeyId) {
+    this.directory = directory;
+    this.currentKeyId = currentKeyId;
+  }
+
+  @Override
+  public String getCurrentKeyId() {
+    return currentKeyId;
+  }
+
+  @Override
+  public SecretKey getKey(String keyId) {
+    // key IDs come from payload metadata, never let them escape the key directory
+    if (!KEY_ID.matcher(keyId).matches()) {
+      throw new IllegalArgumentException("Invalid key ID: " + keyId);
+    }
+
+    Path keyFile = directory.resolve(keyId + ".key");
+    if (!Files.exists(keyFile)) {
+      throw new IllegalArgumentException("Unknown key ID: " + keyId);
+    }
+
+    try {
+      String encoded = new String(Files.readAllBytes(keyFile), StandardCharsets.UTF_8).trim();
+      return new SecretKeySpec(Base64.getDecoder().decode(encoded), "AES");
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
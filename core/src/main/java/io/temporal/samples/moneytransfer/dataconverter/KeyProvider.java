@@ -0,0 +1,42 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package io.temporal.samples.moneytransfer.dataconverter;
+
+import javax.crypto.SecretKey;
+
+/**
+ * Source of the keys used by {@link CryptCodec}.
+ *
+ * <p>Every encrypted payload records the ID of the key it was written with, so rotating the current
+ * key ID only affects new payloads while old ones keep decrypting with their original key.
+ */
+public interface KeyProvider {
+
+  /** ID of the key new payloads are encrypted with. */
+  String getCurrentKeyId();
+
+  /**
+   * Resolves a key, e.g. from a KMS. Wrap slow providers in a {@link CachingKeyProvider} so this is
+   * not called per payload.
+   *
+   * @throws IllegalArgumentException if the key is unknown
+   */
+  SecretKey getKey(String keyId);
+}
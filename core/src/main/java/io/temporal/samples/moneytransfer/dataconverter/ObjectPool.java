@@ -0,0 +1,55 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package io.temporal.samples.moneytransfer.dataconverter;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * A bounded pool of objects that are costly to create and not thread safe, such as {@code Cipher}
+ * and {@code Deflater}. Unlike a ThreadLocal it is shared by all threads, so short-lived virtual
+ * threads reuse instances instead of each creating their own.
+ */
+final class ObjectPool<T> {
+  private final BlockingQueue<T> idle;
+  private final Supplier<T> factory;
+  private final Consumer<T> discard;
+
+  /** Objects released while the pool is full are passed to {@code discard}. */
+  ObjectPool(int capacity, Supplier<T> factory, Consumer<T> discard) {
+    this.idle = new ArrayBlockingQueue<>(capacity);
+    this.factory = factory;
+    this.discard = discard;
+  }
+
+  // never blocks, a new object is created when none is idle
+  T borrow() {
+    T object = idle.poll();
+    return object != null ? object : factory.get();
+  }
+
+  void release(T object) {
+    if (!idle.offer(object)) {
+      discard.accept(object);
+    }
+  }
+}
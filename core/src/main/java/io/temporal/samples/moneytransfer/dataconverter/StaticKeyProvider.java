@@ -0,0 +1,42 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package io.temporal.samples.moneytransfer.dataconverter;
+
+import java.nio.charset.StandardCharsets;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+/** Demo provider which uses the key ID itself as the key. Not for production use. */
+public class StaticKeyProvider implements KeyProvider {
+
+  @Override
+  public String getCurrentKeyId() {
+    // Currently there is no context available to vary which key is used.
+    // Use a fixed key for all payloads.
+    return "sa-rocks!sa-rocks!sa-rocks!yeah!";
+  }
+
+  @Override
+  public SecretKey getKey(String keyId) {
+    // Key must be fetched from KMS or other secure storage.
+    // Hard coded here only for example purposes.
+    return new SecretKeySpec(keyId.getBytes(StandardCharsets.UTF_8), "AES");
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package io.temporal.samples.moneytransfer.dataconverter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.temporal.api.common.v1.Payload;
+import io.temporal.payload.codec.PayloadCodec;
+import io.temporal.payload.codec.PayloadCodecException;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+
+/** Records how long a codec spends encoding and decoding. */
+public class TimedCodec implements PayloadCodec {
+
+  private final PayloadCodec codec;
+  private final Timer encodeTimer;
+  private final Timer decodeTimer;
+
+  public TimedCodec(String name, PayloadCodec codec, MeterRegistry registry) {
+    this.codec = codec;
+    this.encodeTimer = newTimer(name, "encode", registry);
+    this.decodeTimer = newTimer(name, "decode", registry);
+  }
+
+  @NotNull
+  @Override
+  public List<Payload> encode(@NotNull List<Payload> payloads) {
+    return encodeTimer.record(() -> codec.encode(payloads));
+  }
+
+  @NotNull
+  @Override
+  public List<Payload> decode(@NotNull List<Payload> payloads) throws PayloadCodecException {
+    return decodeTimer.record(() -> codec.decode(payloads));
+  }
+
+  private static Timer newTimer(String name, String operation, MeterRegistry registry) {
+    return Timer.builder("moneytransfer.codec")
+        .tag("codec", name)
+        .tag("operation", operation)
+        .publishPercentileHistogram()
+        .register(registry);
+  }
+}
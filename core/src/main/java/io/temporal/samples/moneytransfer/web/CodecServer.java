@@ -0,0 +1,146 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package io.temporal.samples.moneytransfer.web;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.util.JsonFormat;
+import io.javalin.http.BadRequestResponse;
+import io.javalin.http.Context;
+import io.javalin.http.InternalServerErrorResponse;
+import io.temporal.api.common.v1.Payload;
+import io.temporal.api.common.v1.Payloads;
+import io.temporal.payload.codec.PayloadCodec;
+import io.temporal.payload.codec.PayloadCodecException;
+import io.temporal.samples.moneytransfer.TemporalClient;
+import io.temporal.samples.moneytransfer.dataconverter.CompressionCodec;
+import io.temporal.samples.moneytransfer.dataconverter.CryptCodec;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Remote codec endpoints for the Temporal UI and CLI: {@code /codec/encode} and {@code
+ * /codec/decode}.
+ *
+ * <p>Requests and responses use the standard codec server format, the protobuf JSON of {@link
+ * Payloads}. Large batches are split into chunks which are decoded in parallel. The response is
+ * written once every chunk is decoded, so a failure is returned as an error status instead of a
+ * truncated body.
+ */
+public class CodecServer {
+  private static final int CHUNK_SIZE = 64;
+
+  // decoding handles payloads written with any configuration, each codec skips foreign payloads
+  private final List<PayloadCodec> decodeCodecs =
+      Arrays.asList(new CryptCodec(), new CompressionCodec(Integer.MAX_VALUE));
+  private final List<PayloadCodec> encodeCodecs = TemporalClient.getPayloadCodecs();
+
+  private final ExecutorService codecPool =
+      Executors.newFixedThreadPool(
+          Runtime.getRuntime().availableProcessors(),
+          runnable -> {
+            Thread thread = new Thread(runnable, "codec-server");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  public void encode(Context ctx) throws IOException {
+    List<Payload> payloads = parsePayloads(ctx);
+    // same order as CodecDataConverter: last to first
+    for (ListIterator<PayloadCodec> it = encodeCodecs.listIterator(encodeCodecs.size());
+        it.hasPrevious(); ) {
+      payloads = it.previous().encode(payloads);
+    }
+    writePayloads(ctx, Collections.singletonList(CompletableFuture.completedFuture(payloads)));
+  }
+
+  public void decode(Context ctx) throws IOException {
+    List<Payload> payloads = parsePayloads(ctx);
+
+    List<CompletableFuture<List<Payload>>> chunks = new ArrayList<>();
+    for (int i = 0; i < payloads.size(); i += CHUNK_SIZE) {
+      List<Payload> chunk = payloads.subList(i, Math.min(i + CHUNK_SIZE, payloads.size()));
+      chunks.add(CompletableFuture.supplyAsync(() -> decodeChunk(chunk), codecPool));
+    }
+
+    try {
+      CompletableFuture.allOf(chunks.toArray(new CompletableFuture<?>[0])).join();
+    } catch (CompletionException e) {
+      // payloads that can't be decoded are the caller's error, anything else is ours
+      if (e.getCause() instanceof PayloadCodecException) {
+        throw new BadRequestResponse("Invalid payloads: " + e.getCause().getMessage());
+      }
+      throw new InternalServerErrorResponse("Decoding failed: " + e.getCause().getMessage());
+    }
+    writePayloads(ctx, chunks);
+  }
+
+  private List<Payload> decodeChunk(List<Payload> payloads) {
+    for (PayloadCodec codec : decodeCodecs) {
+      payloads = codec.decode(payloads);
+    }
+    return payloads;
+  }
+
+  private static List<Payload> parsePayloads(Context ctx) {
+    Payloads.Builder payloads = Payloads.newBuilder();
+    try {
+      JsonFormat.parser().ignoringUnknownFields().merge(ctx.body(), payloads);
+    } catch (InvalidProtocolBufferException e) {
+      throw new BadRequestResponse("Invalid payloads: " + e.getMessage());
+    }
+    return payloads.getPayloadsList();
+  }
+
+  // writes {"payloads": [...]} of completed chunks in order, without building the JSON in memory
+  private static void writePayloads(Context ctx, List<CompletableFuture<List<Payload>>> chunks)
+      throws IOException {
+    JsonFormat.Printer printer = JsonFormat.printer().omittingInsignificantWhitespace();
+    ctx.contentType("application/json");
+
+    Writer writer =
+        new BufferedWriter(new OutputStreamWriter(ctx.outputStream(), StandardCharsets.UTF_8));
+    writer.write("{\"payloads\":[");
+    boolean first = true;
+    for (CompletableFuture<List<Payload>> chunk : chunks) {
+      for (Payload payload : chunk.join()) {
+        if (!first) {
+          writer.write(',');
+        }
+        printer.appendTo(payload, writer);
+        first = false;
+      }
+      writer.flush();
+    }
+    writer.write("]}");
+    writer.flush();
+  }
+}
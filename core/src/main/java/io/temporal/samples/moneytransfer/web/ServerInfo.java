@@ -47,6 +47,21 @@ public class ServerInfo {
     return taskqueue != null && !taskqueue.isEmpty() ? taskqueue : "MoneyTransferJava";
   }
 
+  // task queue for transfer activities, empty keeps them on the workflow's task queue
+  public static String getActivityTaskqueue() {
+    return getStringEnv("TEMPORAL_MONEYTRANSFER_ACTIVITY_TASKQUEUE", "");
+  }
+
+  // task queue for CPU-heavy activities (the STRESS_TEST validate), defaults to the activity queue
+  public static String getHeavyActivityTaskqueue() {
+    return getStringEnv("TEMPORAL_MONEYTRANSFER_HEAVY_TASKQUEUE", getActivityTaskqueue());
+  }
+
+  // what the worker polls: all (default), workflow, activity or heavy-activity
+  public static String getWorkerRole() {
+    return getStringEnv("WORKER_ROLE", "all");
+  }
+
   public static String getWebServerURL() {
     String webServerURL = System.getenv("TEMPORAL_JAVA_WEB_SERVER_URL");
     return webServerURL != null && !webServerURL.isEmpty() ? webServerURL : "http://localhost:7070";
@@ -67,6 +82,245 @@ public class ServerInfo {
     return workflowSleepDuration != 0 ? workflowSleepDuration : 5;
   }
 
+  public static boolean isEncryptPayloads() {
+    return "true".equals(System.getenv("ENCRYPT_PAYLOADS"));
+  }
+
+  // directory of <keyId>.key files, unset uses the built-in demo key
+  public static String getEncryptionKeyDir() {
+    String keyDir = System.getenv("ENCRYPTION_KEY_DIR");
+    return keyDir != null ? keyDir : "";
+  }
+
+  // key used to encrypt new payloads when ENCRYPTION_KEY_DIR is set
+  public static String getEncryptionKeyId() {
+    String keyId = System.getenv("ENCRYPTION_KEY_ID");
+    return keyId != null && !keyId.isEmpty() ? keyId : "default";
+  }
+
+  public static boolean isCompressPayloads() {
+    return "true".equals(System.getenv("COMPRESS_PAYLOADS"));
+  }
+
+  // payloads smaller than this are not worth compressing
+  public static int getCompressionThresholdBytes() {
+    return getIntEnv("COMPRESSION_THRESHOLD_BYTES", 1024);
+  }
+
+  // comma separated origins allowed to call the codec endpoints, e.g. http://localhost:8233
+  public static String getCodecCorsOrigins() {
+    String origins = System.getenv("CODEC_CORS_ORIGINS");
+    return origins != null ? origins : "";
+  }
+
+  // start transfers that run validate as a local activity (STRESS_TEST always uses a regular
+  // one), read by the starting process and carried in the workflow input
+  public static boolean isLocalValidate() {
+    return "true".equals(System.getenv("LOCAL_VALIDATE"));
+  }
+
+  // complete bank API activities from the HTTP callback instead of blocking the activity thread
+  public static boolean isAsyncActivityCompletion() {
+    return "true".equals(System.getenv("ASYNC_ACTIVITY_COMPLETION"));
+  }
+
+  // idle keep-alive connections kept open to the banking API
+  public static int getHttpMaxIdleConnections() {
+    return getIntEnv("HTTP_MAX_IDLE_CONNECTIONS", 5);
+  }
+
+  // Concurrent calls to the banking API. All calls go to one host, so both default to the
+  // activity slot count; a lower limit queues calls while their activity timeout keeps running.
+  public static int getHttpMaxRequests() {
+    return getIntEnv("HTTP_MAX_REQUESTS", getWorkerActivitySlots());
+  }
+
+  public static int getHttpMaxRequestsPerHost() {
+    return getIntEnv("HTTP_MAX_REQUESTS_PER_HOST", getHttpMaxRequests());
+  }
+
+  public static int getHttpConnectTimeoutMillis() {
+    return getIntEnv("HTTP_CONNECT_TIMEOUT_MILLIS", 2000);
+  }
+
+  // "jaeger" or "file" enables tracing, empty disables it
+  public static String getTracingExporter() {
+    String exporter = System.getenv("TRACING_EXPORTER");
+    return exporter != null ? exporter : "";
+  }
+
+  // Jaeger collector gRPC endpoint
+  public static String getTracingEndpoint() {
+    String endpoint = System.getenv("TRACING_ENDPOINT");
+    return endpoint != null && !endpoint.isEmpty() ? endpoint : "http://localhost:14250";
+  }
+
+  // spans are appended here, one JSON object per line
+  public static String getTracingFile() {
+    String file = System.getenv("TRACING_FILE");
+    return file != null && !file.isEmpty() ? file : "traces.jsonl";
+  }
+
+  // run workflow and activity task executors on virtual threads, requires Java 21
+  public static boolean isVirtualThreads() {
+    return "true".equals(System.getenv("WORKER_VIRTUAL_THREADS"));
+  }
+
+  // worker slot tuner: resource (default), fixed or composite, see worker-auto-tuning.md
+  public static String getWorkerTuner() {
+    String tuner = System.getenv("WORKER_TUNER");
+    return tuner != null && !tuner.isEmpty() ? tuner : "resource";
+  }
+
+  // fraction of memory and CPU the resource-based slot suppliers aim for
+  public static double getWorkerTargetMemory() {
+    return getDoubleEnv("WORKER_TARGET_MEMORY", 0.7);
+  }
+
+  public static double getWorkerTargetCpu() {
+    return getDoubleEnv("WORKER_TARGET_CPU", 0.7);
+  }
+
+  // fixed slot counts, used by the fixed tuner and by fixed suppliers of the composite tuner
+  public static int getWorkerWorkflowSlots() {
+    return getIntEnv("WORKER_WORKFLOW_SLOTS", 200);
+  }
+
+  public static int getWorkerActivitySlots() {
+    return getIntEnv("WORKER_ACTIVITY_SLOTS", 200);
+  }
+
+  public static int getWorkerLocalActivitySlots() {
+    return getIntEnv("WORKER_LOCAL_ACTIVITY_SLOTS", 200);
+  }
+
+  // slot supplier per task type for the composite tuner: fixed or resource
+  public static String getWorkerWorkflowSlotSupplier() {
+    return getStringEnv("WORKER_WORKFLOW_SLOT_SUPPLIER", "fixed");
+  }
+
+  public static String getWorkerActivitySlotSupplier() {
+    return getStringEnv("WORKER_ACTIVITY_SLOT_SUPPLIER", "resource");
+  }
+
+  public static String getWorkerLocalActivitySlotSupplier() {
+    return getStringEnv("WORKER_LOCAL_ACTIVITY_SLOT_SUPPLIER", "resource");
+  }
+
+  // task pollers per worker, 0 keeps the SDK default
+  public static int getWorkerWorkflowPollers() {
+    return getIntEnv("WORKER_WORKFLOW_POLLERS", 0);
+  }
+
+  public static int getWorkerActivityPollers() {
+    return getIntEnv("WORKER_ACTIVITY_POLLERS", 0);
+  }
+
+  // workflows kept in the sticky cache, 0 keeps the SDK default
+  public static int getWorkerStickyCacheSize() {
+    return getIntEnv("WORKER_STICKY_CACHE_SIZE", 0);
+  }
+
+  // Port of the worker's Prometheus /metrics endpoint, 0 disables it. Defaults to one port per
+  // worker role, so workers of different roles can run side by side on one host.
+  public static int getWorkerMetricsPort() {
+    int defaultPort;
+    switch (getWorkerRole()) {
+      case "activity":
+        defaultPort = 8078;
+        break;
+      case "heavy-activity":
+        defaultPort = 8079;
+        break;
+      default:
+        defaultPort = 8077;
+    }
+    return getIntEnv("WORKER_METRICS_PORT", defaultPort);
+  }
+
+  // number of gRPC channels shared by all clients in this process
+  public static int getChannelCount() {
+    return getIntEnv("TEMPORAL_CHANNEL_COUNT", 1);
+  }
+
+  // keepalive ping interval for the gRPC channels, 0 disables keepalive
+  public static int getKeepAliveSeconds() {
+    return getIntEnv("TEMPORAL_KEEPALIVE_SECONDS", 30);
+  }
+
+  public static int getKeepAliveTimeoutSeconds() {
+    return getIntEnv("TEMPORAL_KEEPALIVE_TIMEOUT_SECONDS", 15);
+  }
+
+  // threads used by the web server for short blocking Temporal calls (start, query, signal)
+  public static int getClientThreadCount() {
+    return getIntEnv("TEMPORAL_CLIENT_THREADS", 16);
+  }
+
+  // how often a streamed transfer is re-queried, shared by all subscribers of that transfer
+  public static int getStatusPollMillis() {
+    return getIntEnv("TEMPORAL_STATUS_POLL_MILLIS", 1000);
+  }
+
+  // maximum number of transfers queried at the same time by /runQueryBatch, capped at the number
+  // of client threads that run the queries
+  public static int getBatchQueryParallelism() {
+    return getIntEnv("TEMPORAL_BATCH_QUERY_PARALLELISM", getClientThreadCount());
+  }
+
+  public static int getBatchQueryTimeoutMillis() {
+    return getIntEnv("TEMPORAL_BATCH_QUERY_TIMEOUT_MILLIS", 5000);
+  }
+
+  // how long /listWorkflows results are reused before visibility is queried again
+  public static int getListCacheMillis() {
+    return getIntEnv("TEMPORAL_LIST_CACHE_MILLIS", 2000);
+  }
+
+  // how often the in-memory transfer index asks visibility for new and closed transfers
+  public static int getIndexPollMillis() {
+    return getIntEnv("TEMPORAL_INDEX_POLL_MILLIS", 2000);
+  }
+
+  // local cache of downloaded workflow histories used by the replayers
+  public static String getHistoryCorpusDir() {
+    String corpusDir = System.getenv("TEMPORAL_HISTORY_CORPUS_DIR");
+    return corpusDir != null && !corpusDir.isEmpty() ? corpusDir : "../workflowHistories/corpus";
+  }
+
+  private static int getIntEnv(String name, int defaultValue) {
+    String value = System.getenv(name);
+
+    if (value != null && !value.isEmpty()) {
+      try {
+        return Integer.parseInt(value);
+      } catch (NumberFormatException e) {
+        System.err.println("Error parsing " + name + " as an integer: " + e.getMessage());
+      }
+    }
+
+    return defaultValue;
+  }
+
+  private static double getDoubleEnv(String name, double defaultValue) {
+    String value = System.getenv(name);
+
+    if (value != null && !value.isEmpty()) {
+      try {
+        return Double.parseDouble(value);
+      } catch (NumberFormatException e) {
+        System.err.println("Error parsing " + name + " as a number: " + e.getMessage());
+      }
+    }
+
+    return defaultValue;
+  }
+
+  private static String getStringEnv(String name, String defaultValue) {
+    String value = System.getenv(name);
+    return value != null && !value.isEmpty() ? value : defaultValue;
+  }
+
   public static Map<String, String> getServerInfo() {
     Map<String, String> info = new HashMap<>();
     info.put("certPath", getCertPath());
@@ -74,6 +328,8 @@ public class ServerInfo {
     info.put("namespace", getNamespace());
     info.put("address", getAddress());
     info.put("taskQueue", getTaskqueue());
+    info.put("activityTaskQueue", getActivityTaskqueue());
+    info.put("heavyActivityTaskQueue", getHeavyActivityTaskqueue());
     return info;
   }
 }
@@ -0,0 +1,235 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package io.temporal.samples.moneytransfer.web;
+
+import static io.temporal.samples.moneytransfer.TransferRequester.runQueryAsync;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.javalin.http.sse.SseClient;
+import io.temporal.client.WorkflowNotFoundException;
+import io.temporal.client.WorkflowServiceException;
+import io.temporal.samples.moneytransfer.dataclasses.StateObj;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pushes transfer progress to Server-Sent Events subscribers.
+ *
+ * <p>Subscribers of the same workflow ID share a single upstream query loop, so the Temporal
+ * frontend sees one {@code transferStatus} query per poll interval per transfer no matter how many
+ * browsers are watching. A {@code state} event is only sent when the {@link StateObj} changes.
+ *
+ * <p>Events are sent outside the lock guarding the subscriptions, so a slow client only delays
+ * its own transfer's loop. A failed query is retried with backoff; the stream is closed after an
+ * error that retrying can't fix, such as an unknown workflow ID, or after too many in a row.
+ *
+ * <p>A disconnect is only noticed when writing to the client, so while the state doesn't change
+ * the loop sends a keepalive comment instead. That removes a subscription whose browsers have all
+ * gone, e.g. for a transfer waiting for approval, rather than querying it forever.
+ */
+public class TransferStatusStream {
+  private static final ObjectMapper mapper = new ObjectMapper();
+
+  private static final int MAX_CONSECUTIVE_ERRORS = 10;
+  private static final long MAX_BACKOFF_MILLIS = 30_000;
+  private static final long KEEPALIVE_MILLIS = 15_000;
+
+  private final Map<String, Subscription> subscriptions = new HashMap<>();
+  private final ScheduledExecutorService scheduler =
+      Executors.newSingleThreadScheduledExecutor(
+          runnable -> {
+            Thread thread = new Thread(runnable, "transfer-status-stream");
+            thread.setDaemon(true);
+            return thread;
+          });
+  private final long pollIntervalMillis;
+
+  public TransferStatusStream(long pollIntervalMillis) {
+    this.pollIntervalMillis = pollIntervalMillis;
+  }
+
+  public void subscribe(SseClient client) {
+    String workflowId = client.ctx().pathParam("workflowId");
+
+    // keep the connection open after this handler returns
+    client.keepAlive();
+
+    Subscription subscription = add(workflowId, client);
+    client.onClose(() -> remove(subscription, client));
+
+    // late subscribers get the current state straight away instead of waiting for a change
+    String lastState = subscription.lastState;
+    if (lastState != null) {
+      client.sendEvent("state", lastState);
+    }
+  }
+
+  private synchronized Subscription add(String workflowId, SseClient client) {
+    Subscription subscription = subscriptions.get(workflowId);
+    if (subscription == null) {
+      subscription = new Subscription(workflowId);
+      subscriptions.put(workflowId, subscription);
+      scheduler.execute(subscription::poll);
+    }
+    subscription.clients.add(client);
+    return subscription;
+  }
+
+  private synchronized void remove(Subscription subscription, SseClient client) {
+    subscription.clients.remove(client);
+    if (subscription.clients.isEmpty()) {
+      subscription.closed = true;
+      subscriptions.remove(subscription.workflowId, subscription);
+    }
+  }
+
+  private synchronized List<SseClient> getClients(Subscription subscription) {
+    return new ArrayList<>(subscription.clients);
+  }
+
+  private void broadcast(Subscription subscription, String event, String data) {
+    subscription.lastSentMillis = System.currentTimeMillis();
+    for (SseClient client : getClients(subscription)) {
+      client.sendEvent(event, data);
+    }
+  }
+
+  // a failed write closes the client, which removes it from the subscription
+  private void keepAlive(Subscription subscription) {
+    subscription.lastSentMillis = System.currentTimeMillis();
+    for (SseClient client : getClients(subscription)) {
+      client.sendComment("keepalive");
+    }
+  }
+
+  private void finish(Subscription subscription) {
+    List<SseClient> clients;
+    synchronized (this) {
+      subscription.closed = true;
+      subscriptions.remove(subscription.workflowId, subscription);
+      clients = new ArrayList<>(subscription.clients);
+    }
+    for (SseClient client : clients) {
+      client.close();
+    }
+  }
+
+  private static boolean isFinished(StateObj state) {
+    return "finished".equals(state.getTransferState())
+        || "FAILED".equals(state.getWorkflowStatus());
+  }
+
+  // errors for which querying again returns the same error
+  private static boolean isNonRetryable(Throwable error) {
+    Throwable cause =
+        error instanceof CompletionException && error.getCause() != null
+            ? error.getCause()
+            : error;
+    if (cause instanceof WorkflowNotFoundException) {
+      return true;
+    }
+    if (cause instanceof WorkflowServiceException && cause.getCause() != null) {
+      cause = cause.getCause();
+    }
+    if (cause instanceof StatusRuntimeException) {
+      Status.Code code = ((StatusRuntimeException) cause).getStatus().getCode();
+      return code == Status.Code.NOT_FOUND
+          || code == Status.Code.INVALID_ARGUMENT
+          || code == Status.Code.PERMISSION_DENIED;
+    }
+    return false;
+  }
+
+  private class Subscription {
+    private final String workflowId;
+    private final List<SseClient> clients = new ArrayList<>();
+    // last state sent, as JSON, used to suppress unchanged updates
+    private volatile String lastState;
+    private volatile boolean closed = false;
+    private volatile long lastSentMillis = System.currentTimeMillis();
+    private int consecutiveErrors = 0;
+
+    Subscription(String workflowId) {
+      this.workflowId = workflowId;
+    }
+
+    void poll() {
+      if (closed) {
+        return;
+      }
+
+      CompletableFuture<StateObj> state;
+      try {
+        state = runQueryAsync(workflowId);
+      } catch (Exception e) {
+        state = new CompletableFuture<>();
+        state.completeExceptionally(e);
+      }
+
+      state.whenComplete(
+          (result, error) -> {
+            if (error != null) {
+              broadcast(this, "error", String.valueOf(error.getMessage()));
+              consecutiveErrors++;
+              if (isNonRetryable(error) || consecutiveErrors >= MAX_CONSECUTIVE_ERRORS) {
+                finish(this);
+                return;
+              }
+            } else {
+              consecutiveErrors = 0;
+              try {
+                String json = mapper.writeValueAsString(result);
+                if (!json.equals(lastState)) {
+                  lastState = json;
+                  broadcast(this, "state", json);
+                }
+              } catch (JsonProcessingException e) {
+                broadcast(this, "error", e.getMessage());
+              }
+
+              if (isFinished(result)) {
+                finish(this);
+                return;
+              }
+            }
+
+            if (!closed && System.currentTimeMillis() - lastSentMillis >= KEEPALIVE_MILLIS) {
+              keepAlive(this);
+            }
+            if (!closed) {
+              // doubles the interval for each consecutive error
+              long delayMillis =
+                  Math.min(pollIntervalMillis << consecutiveErrors, MAX_BACKOFF_MILLIS);
+              scheduler.schedule(this::poll, delayMillis, TimeUnit.MILLISECONDS);
+            }
+          });
+    }
+  }
+}
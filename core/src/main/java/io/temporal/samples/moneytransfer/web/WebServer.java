@@ -19,18 +19,34 @@
 
 package io.temporal.samples.moneytransfer.web;
 
-import static io.temporal.samples.moneytransfer.TransferLister.listWorkflows;
+import static io.temporal.samples.moneytransfer.TransferLister.listWorkflowsPageAsync;
 import static io.temporal.samples.moneytransfer.TransferRequester.*;
 import static io.temporal.samples.moneytransfer.TransferScheduler.runSchedule;
 
+import com.google.common.base.Splitter;
 import io.javalin.Javalin;
+import io.javalin.http.BadRequestResponse;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.context.Scope;
+import io.temporal.samples.moneytransfer.Metrics;
+import io.temporal.samples.moneytransfer.Tracing;
+import io.temporal.samples.moneytransfer.TransferIndex;
 import io.temporal.samples.moneytransfer.dataclasses.*;
+import java.io.IOException;
 import java.util.AbstractMap;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 public class WebServer {
-  public static void main(String[] args) {
+  // server span of the current request, see Tracing
+  private static final String SPAN_ATTRIBUTE = "tracing.span";
+
+  public static void main(String[] args) throws IOException {
+    Tracing.init("moneytransfer-web");
+
     Javalin app =
         Javalin.create(
             config -> {
@@ -40,8 +56,67 @@ public class WebServer {
                     staticFiles.directory = "svelte_ui/build";
                     // are located
                   });
+
+              // latency per endpoint, by route template rather than the raw path
+              config.requestLogger.http(
+                  (ctx, millis) -> {
+                    String path = ctx.endpointHandlerPath();
+                    String route = path.isEmpty() ? "unmatched" : path;
+                    Metrics.recordHttpRequest(ctx.method().name(), route, ctx.statusCode(), millis);
+
+                    Span span = ctx.attribute(SPAN_ATTRIBUTE);
+                    if (span != null) {
+                      span.updateName(ctx.method().name() + " " + route);
+                      span.setAttribute("http.route", route);
+                      span.setAttribute("http.status_code", ctx.statusCode());
+                      span.end();
+                    }
+                  });
+
+              // the Temporal UI calls the codec endpoints from the browser, so only those
+              // allow the configured origins, and a wildcard is refused with credentials
+              if (!ServerInfo.getCodecCorsOrigins().isEmpty()) {
+                config.plugins.enableCors(
+                    cors ->
+                        cors.add(
+                            rule -> {
+                              rule.path = "/codec/*";
+                              for (String origin :
+                                  Splitter.on(',')
+                                      .trimResults()
+                                      .omitEmptyStrings()
+                                      .split(ServerInfo.getCodecCorsOrigins())) {
+                                if ("*".equals(origin)) {
+                                  throw new IllegalArgumentException(
+                                      "CODEC_CORS_ORIGINS must list explicit origins, not *");
+                                }
+                                rule.allowHost(origin);
+                              }
+                              rule.allowCredentials = true;
+                            }));
+              }
+            });
+
+    ScheduledExecutorService delayScheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "simulate-delay");
+              thread.setDaemon(true);
+              return thread;
             });
 
+    // one server span per request, continuing the caller's trace if it sent a traceparent header
+    app.before(
+        ctx ->
+            ctx.attribute(
+                SPAN_ATTRIBUTE,
+                Tracing.startServerSpan("HTTP " + ctx.method().name(), ctx::header)));
+
+    TransferIndex transferIndex = new TransferIndex(ServerInfo.getIndexPollMillis());
+    transferIndex.start();
+
+    app.get("/metrics", ctx -> ctx.contentType(Metrics.CONTENT_TYPE).result(Metrics.scrape()));
+
     app.get(
         "/serverinfo",
         ctx -> {
@@ -54,11 +129,39 @@ public class WebServer {
         ctx -> {
           WorkflowParameterObj workflowParameterObj = ctx.bodyAsClass(WorkflowParameterObj.class);
 
-          String transferId = runWorkflow(workflowParameterObj);
+          // start the workflow within this request's span
+          CompletableFuture<String> started;
+          try (Scope ignored = ctx.<Span>attribute(SPAN_ATTRIBUTE).makeCurrent()) {
+            started = runWorkflowAsync(workflowParameterObj);
+          }
 
-          ctx.json(new AbstractMap.SimpleEntry<>("transferId", transferId));
+          ctx.future(
+              () ->
+                  started.thenAccept(
+                      transferId ->
+                          ctx.json(new AbstractMap.SimpleEntry<>("transferId", transferId))));
+        });
+
+    app.post(
+        "/runBatchWorkflow",
+        ctx -> {
+          BatchTransferParameterObj batchParameterObj =
+              ctx.bodyAsClass(BatchTransferParameterObj.class);
+
+          String batchId;
+          try {
+            batchId = runBatchWorkflow(batchParameterObj);
+          } catch (IllegalArgumentException e) {
+            throw new BadRequestResponse(e.getMessage());
+          }
+
+          ctx.json(new AbstractMap.SimpleEntry<>("batchId", batchId));
         });
 
+    app.get(
+        "/batchProgress/{workflowId}",
+        ctx -> ctx.json(getBatchProgress(ctx.pathParam("workflowId"))));
+
     app.post(
         "/scheduleWorkflow",
         ctx -> {
@@ -78,13 +181,32 @@ public class WebServer {
 
           System.out.println("QUERY workflowId: " + workflowId);
 
-          StateObj transferState = runQuery(workflowId);
+          CompletableFuture<StateObj> transferState = runQueryAsync(workflowId);
+
+          ctx.future(() -> transferState.thenAccept(ctx::json));
+        });
+
+    app.post(
+        "/runQueryBatch",
+        ctx -> {
+          // get workflowIds from request POST body
+          WorkflowIdListObj workflowIdListObj = ctx.bodyAsClass(WorkflowIdListObj.class);
+          if (workflowIdListObj.getWorkflowIds() == null) {
+            ctx.json(new AbstractMap.SimpleEntry<>("message", "workflowIds is required"));
+            return;
+          }
 
-          // System.out.println("state: " + transferState);
+          CompletableFuture<List<QueryResultObj>> transferStates =
+              runQueryBatchAsync(workflowIdListObj.getWorkflowIds());
 
-          ctx.json(transferState);
+          ctx.future(() -> transferStates.thenAccept(ctx::json));
         });
 
+    // push alternative to polling /runQuery, emits a "state" event whenever the transfer changes
+    TransferStatusStream transferStatusStream =
+        new TransferStatusStream(ServerInfo.getStatusPollMillis());
+    app.sse("/transferStatus/{workflowId}", transferStatusStream::subscribe);
+
     app.post(
         "/getWorkflowOutcome",
         ctx -> {
@@ -96,21 +218,50 @@ public class WebServer {
           // get workflowId from request POST body
           String workflowId = ctx.formParam("workflowId");
 
-          ResultObj workflowOutcome = getWorkflowOutcome(workflowId);
+          // the request is parked until the transfer finishes, no Jetty thread is held meanwhile
+          CompletableFuture<ResultObj> workflowOutcome = getWorkflowOutcomeAsync(workflowId);
 
-          System.out.println("outcome: " + workflowOutcome);
-
-          ctx.json(workflowOutcome);
+          ctx.future(
+              () ->
+                  workflowOutcome.thenAccept(
+                      outcome -> {
+                        System.out.println("outcome: " + outcome);
+                        ctx.json(outcome);
+                      }));
         });
 
     app.get(
         "/listWorkflows",
         ctx -> {
-          List<WorkflowStatusObj> workflowList = listWorkflows();
+          // served from the in-memory index, optionally filtered with ?status=RUNNING etc.
+          CompletableFuture<List<WorkflowStatusObj>> workflowList =
+              transferIndex.list(ctx.queryParam("status"));
+
+          ctx.future(() -> workflowList.thenAccept(ctx::json));
+        });
+
+    app.get(
+        "/listWorkflowsPage",
+        ctx -> {
+          // pass the previous page's nextCursor to continue, omit it for the first page
+          String cursor = ctx.queryParam("cursor");
+          int pageSize = ctx.queryParamAsClass("pageSize", Integer.class).getOrDefault(50);
+
+          CompletableFuture<WorkflowListPageObj> workflowPage;
+          try {
+            workflowPage = listWorkflowsPageAsync(cursor, pageSize);
+          } catch (IllegalArgumentException e) {
+            throw new BadRequestResponse(e.getMessage());
+          }
 
-          ctx.json(workflowList);
+          ctx.future(() -> workflowPage.thenAccept(ctx::json));
         });
 
+    // remote codec for the Temporal UI and CLI, e.g. temporal --codec-endpoint localhost:7070/codec
+    CodecServer codecServer = new CodecServer();
+    app.post("/codec/encode", codecServer::encode);
+    app.post("/codec/decode", codecServer::decode);
+
     app.get("/test", ctx -> ctx.result("Hello Javalin!"));
 
     app.get(
@@ -121,8 +272,13 @@ public class WebServer {
           if (seconds_param != null) {
             int seconds = Integer.parseInt(seconds_param);
             System.out.println("Simulating API response delay: " + seconds);
-            TimeUnit.SECONDS.sleep(seconds);
-            ctx.result("Delay finished after " + seconds + " seconds");
+            // don't hold a Jetty thread per outstanding call while delaying
+            CompletableFuture<String> delayed = new CompletableFuture<>();
+            delayScheduler.schedule(
+                () -> delayed.complete("Delay finished after " + seconds + " seconds"),
+                seconds,
+                TimeUnit.SECONDS);
+            ctx.future(() -> delayed.thenAccept(ctx::result));
           } else {
             ctx.result("use query param s to specify seconds to delay");
           }
@@ -135,9 +291,10 @@ public class WebServer {
           WorkflowIdObj workflowIdObj = ctx.bodyAsClass(WorkflowIdObj.class);
           String workflowId = workflowIdObj.getWorkflowId();
 
-          runApproveSignal(workflowId);
-
-          ctx.result("{\"signal\": \"sent\"}");
+          ctx.future(
+              () ->
+                  runApproveSignalAsync(workflowId)
+                      .thenRun(() -> ctx.result("{\"signal\": \"sent\"}")));
         });
 
     app.start(7070);
@@ -0,0 +1,48 @@
+package io.temporal.samples.moneytransfer;
+
+import static org.junit.Assert.assertTrue;
+
+import io.temporal.activity.ActivityOptions;
+import io.temporal.samples.moneytransfer.dataclasses.ExecutionScenarioObj;
+import io.temporal.testing.TestActivityEnvironment;
+import java.time.Duration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AccountTransferActivitiesTest {
+
+  private TestActivityEnvironment testEnvironment;
+  private AccountTransferActivities activities;
+
+  @Before
+  public void setUp() {
+    testEnvironment = TestActivityEnvironment.newInstance();
+    testEnvironment.registerActivitiesImplementations(new AccountTransferActivitiesImpl());
+    activities =
+        testEnvironment.newActivityStub(
+            AccountTransferActivities.class,
+            ActivityOptions.newBuilder()
+                .setStartToCloseTimeout(Duration.ofSeconds(60))
+                .setHeartbeatTimeout(Duration.ofSeconds(3))
+                .build());
+  }
+
+  /** A retried stress test resumes from the checkpoint instead of starting over */
+  @Test
+  public void testStressTestResumesFromHeartbeat() {
+    // the previous attempt got through 29 of the 30 seconds
+    testEnvironment.setHeartbeatDetails(29_000L);
+
+    long start = System.currentTimeMillis();
+    assertTrue(activities.validate(ExecutionScenarioObj.STRESS_TEST));
+    long elapsed = System.currentTimeMillis() - start;
+
+    assertTrue("took " + elapsed + "ms", elapsed < 10_000);
+  }
+
+  @After
+  public void tearDown() {
+    testEnvironment.close();
+  }
+}
@@ -0,0 +1,142 @@
+package io.temporal.samples.moneytransfer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import io.temporal.api.common.v1.WorkflowExecution;
+import io.temporal.api.history.v1.HistoryEvent;
+import io.temporal.api.history.v1.WorkflowExecutionContinuedAsNewEventAttributes;
+import io.temporal.client.WorkflowClient;
+import io.temporal.client.WorkflowOptions;
+import io.temporal.client.WorkflowStub;
+import io.temporal.common.converter.GlobalDataConverter;
+import io.temporal.samples.moneytransfer.dataclasses.BatchResultObj;
+import io.temporal.samples.moneytransfer.dataclasses.BatchTransferParameterObj;
+import io.temporal.samples.moneytransfer.dataclasses.ExecutionScenarioObj;
+import io.temporal.samples.moneytransfer.dataclasses.WorkflowParameterObj;
+import io.temporal.testing.TestWorkflowRule;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class BatchTransferWorkflowTest {
+
+  @Rule
+  public TestWorkflowRule testWorkflowRule =
+      TestWorkflowRule.newBuilder().setDoNotStart(true).build();
+
+  /** Settle a batch over several runs, with one invalid account */
+  @Test
+  public void testBatchContinuesAsNew() {
+    BatchTransferWorkflow workflow = startWorker();
+    BatchResultObj result = workflow.transfer(new BatchTransferParameterObj(newTransfers(25), 4));
+
+    assertEquals(25, result.getProgress().getTotal());
+    assertEquals(25, result.getProgress().getCompleted());
+    assertEquals(24, result.getProgress().getSucceeded());
+    assertEquals(1, result.getProgress().getFailed());
+    assertEquals(1, result.getFailures().size());
+    assertEquals(17, result.getFailures().get(0).getIndex());
+    assertEquals("Invalid Account", result.getFailures().get(0).getError());
+
+    // the progress query reflects the final run
+    WorkflowClient client = testWorkflowRule.getWorkflowClient();
+    BatchTransferWorkflow finished =
+        client.newWorkflowStub(
+            BatchTransferWorkflow.class,
+            WorkflowStub.fromTyped(workflow).getExecution().getWorkflowId());
+    assertEquals(25, finished.getProgress().getCompleted());
+  }
+
+  /** Each run continues as new with the remaining transfers and counts, not earlier results */
+  /** A batch body without transfers is rejected before anything is started */
+  @Test(expected = IllegalArgumentException.class)
+  public void testValidateBatchRejectsMissingTransfers() {
+    BatchTransferParameterObj params = new BatchTransferParameterObj();
+    params.setTransfers(null);
+    TransferRequester.validateBatch(params);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testValidateBatchRejectsTransferWithoutScenario() {
+    List<WorkflowParameterObj> transfers = newTransfers(3);
+    transfers.get(1).setScenario(null);
+    TransferRequester.validateBatch(new BatchTransferParameterObj(transfers, 2));
+  }
+
+  @Test
+  public void testContinueAsNewInputShrinks() {
+    BatchTransferWorkflow workflow = startWorker();
+    workflow.transfer(new BatchTransferParameterObj(newTransfers(25), 4));
+
+    WorkflowClient client = testWorkflowRule.getWorkflowClient();
+    WorkflowExecution execution = WorkflowStub.fromTyped(workflow).getExecution();
+    List<BatchTransferParameterObj> inputs = new ArrayList<>();
+    List<Integer> inputSizes = new ArrayList<>();
+    String runId = execution.getRunId();
+    while (true) {
+      HistoryEvent last = client.fetchHistory(execution.getWorkflowId(), runId).getLastEvent();
+      if (!last.hasWorkflowExecutionContinuedAsNewEventAttributes()) {
+        break;
+      }
+      WorkflowExecutionContinuedAsNewEventAttributes continuedAsNew =
+          last.getWorkflowExecutionContinuedAsNewEventAttributes();
+      inputSizes.add(continuedAsNew.getInput().getSerializedSize());
+      inputs.add(
+          GlobalDataConverter.get()
+              .fromPayloads(
+                  0,
+                  Optional.of(continuedAsNew.getInput()),
+                  BatchTransferParameterObj.class,
+                  BatchTransferParameterObj.class));
+      runId = continuedAsNew.getNewExecutionRunId();
+    }
+
+    // runs of 10, 10 and 5 transfers
+    assertEquals(2, inputs.size());
+    assertEquals(15, inputs.get(0).getTransfers().size());
+    assertEquals(10, inputs.get(0).getProgress().getCompleted());
+    assertEquals(0, inputs.get(0).getFailures().size());
+    assertEquals(5, inputs.get(1).getTransfers().size());
+    assertEquals(20, inputs.get(1).getProgress().getCompleted());
+    assertEquals(1, inputs.get(1).getFailures().size());
+    assertTrue(inputSizes.get(1) < inputSizes.get(0));
+  }
+
+  // continue as new every 10 transfers
+  private BatchTransferWorkflow startWorker() {
+    testWorkflowRule
+        .getWorker()
+        .registerWorkflowImplementationFactory(
+            BatchTransferWorkflow.class, () -> new BatchTransferWorkflowImpl(10));
+    testWorkflowRule
+        .getWorker()
+        .registerActivitiesImplementations(new AccountTransferActivitiesImpl());
+    testWorkflowRule.getTestEnvironment().start();
+
+    return testWorkflowRule
+        .getWorkflowClient()
+        .newWorkflowStub(
+            BatchTransferWorkflow.class,
+            WorkflowOptions.newBuilder().setTaskQueue(testWorkflowRule.getTaskQueue()).build());
+  }
+
+  // transfer 17 has an invalid account
+  private static List<WorkflowParameterObj> newTransfers(int count) {
+    List<WorkflowParameterObj> transfers = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      ExecutionScenarioObj scenario =
+          i == 17 ? ExecutionScenarioObj.INVALID_ACCOUNT : ExecutionScenarioObj.HAPPY_PATH;
+      transfers.add(new WorkflowParameterObj(100 + i, scenario));
+    }
+    return transfers;
+  }
+
+  @After
+  public void tearDown() {
+    testWorkflowRule.getTestEnvironment().shutdown();
+  }
+}
@@ -0,0 +1,127 @@
+package io.temporal.samples.moneytransfer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import io.temporal.samples.moneytransfer.dataclasses.ChargeResponseObj;
+import io.temporal.samples.moneytransfer.dataclasses.ExecutionScenarioObj;
+import io.temporal.samples.moneytransfer.dataclasses.ResultObj;
+import io.temporal.samples.moneytransfer.dataclasses.WorkflowParameterObj;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+public class LoadGeneratorTest {
+
+  @Test
+  public void testParseMix() {
+    Map<ExecutionScenarioObj, Integer> mix =
+        LoadGenerator.parseMix("HAPPY_PATH:9, INVALID_ACCOUNT:1,API_DOWNTIME,BUG_IN_WORKFLOW:0");
+
+    assertEquals(3, mix.size());
+    assertEquals(Integer.valueOf(9), mix.get(ExecutionScenarioObj.HAPPY_PATH));
+    assertEquals(Integer.valueOf(1), mix.get(ExecutionScenarioObj.INVALID_ACCOUNT));
+    assertEquals(Integer.valueOf(1), mix.get(ExecutionScenarioObj.API_DOWNTIME));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testParseMixRejectsEmptyMix() {
+    LoadGenerator.parseMix("HAPPY_PATH:0");
+  }
+
+  @Test
+  public void testParseOptions() {
+    Map<String, String> options =
+        LoadGenerator.parseOptions(new String[] {"rate=50 duration=30", " target=local "});
+
+    assertEquals(3, options.size());
+    assertEquals("50", options.get("rate"));
+    assertEquals("30", options.get("duration"));
+    assertEquals("local", options.get("target"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testParseOptionsRejectsMissingValue() {
+    LoadGenerator.parseOptions(new String[] {"rate=50 duration"});
+  }
+
+  @Test
+  public void testRunOptionsDefaults() {
+    LoadGenerator.RunOptions options =
+        new LoadGenerator.RunOptions(LoadGenerator.parseOptions(new String[] {"concurrency=8"}));
+
+    assertEquals(0, options.rate, 0);
+    assertEquals(8, options.concurrency);
+    assertEquals(60, options.duration);
+    assertEquals(120, options.drain);
+    assertEquals("cluster", options.target);
+    assertEquals(Integer.valueOf(1), options.mix.get(ExecutionScenarioObj.HAPPY_PATH));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRunOptionsRejectsRateAndConcurrency() {
+    new LoadGenerator.RunOptions(
+        LoadGenerator.parseOptions(new String[] {"rate=10 concurrency=8"}));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRunOptionsRequiresRateOrConcurrency() {
+    new LoadGenerator.RunOptions(LoadGenerator.parseOptions(new String[] {"duration=10"}));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRunOptionsRejectsZeroDuration() {
+    new LoadGenerator.RunOptions(LoadGenerator.parseOptions(new String[] {"rate=10 duration=0"}));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRunOptionsRejectsUnknownTarget() {
+    new LoadGenerator.RunOptions(LoadGenerator.parseOptions(new String[] {"rate=10 target=prod"}));
+  }
+
+  /** Open loop pacing on a fake clock, with starts that complete at once */
+  @Test
+  public void testRatePacing() throws InterruptedException {
+    FakeTicker ticker = new FakeTicker();
+    LoadGenerator generator =
+        new LoadGenerator(null, "test", LoadGenerator.parseMix("HAPPY_PATH"), ticker) {
+          @Override
+          CompletableFuture<ResultObj> startWorkflow(
+              String workflowId, WorkflowParameterObj params) {
+            return CompletableFuture.completedFuture(
+                new ResultObj(new ChargeResponseObj("example-charge-id")));
+          }
+        };
+
+    generator.run(10, 0, 2, 60);
+
+    // 10/s for 2s is 20 starts, each recorded once in both histograms
+    assertEquals(20, generator.getStarted());
+    assertEquals(20, generator.getCompleted());
+    assertEquals(20, generator.getStartLatency().getTotalCount());
+    assertEquals(20, generator.getEndToEndLatency().getTotalCount());
+    // the loop only waited out the gaps between starts, the last one 1.9s in
+    assertTrue(ticker.slept.get() >= TimeUnit.MILLISECONDS.toNanos(1900));
+  }
+
+  // a clock that only moves when the generator sleeps
+  private static class FakeTicker implements LoadGenerator.Ticker {
+    private final AtomicLong now = new AtomicLong();
+    final AtomicLong slept = new AtomicLong();
+
+    @Override
+    public long nanoTime() {
+      return now.get();
+    }
+
+    @Override
+    public void sleep(long nanos) throws InterruptedException {
+      slept.addAndGet(nanos);
+      now.addAndGet(nanos);
+      // let the starter threads run while the drain waits
+      Thread.sleep(1);
+    }
+  }
+}
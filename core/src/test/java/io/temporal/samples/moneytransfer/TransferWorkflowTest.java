@@ -1,6 +1,7 @@
 package io.temporal.samples.moneytransfer;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.*;
 
 import io.temporal.client.WorkflowClient;
@@ -11,7 +12,9 @@ import io.temporal.samples.moneytransfer.dataclasses.ExecutionScenarioObj;
 import io.temporal.samples.moneytransfer.dataclasses.ResultObj;
 import io.temporal.samples.moneytransfer.dataclasses.WorkflowParameterObj;
 import io.temporal.testing.TestWorkflowRule;
+import io.temporal.worker.Worker;
 import java.time.Duration;
+import java.util.concurrent.TimeUnit;
 import org.junit.After;
 import org.junit.Rule;
 import org.junit.Test;
@@ -129,6 +132,62 @@ public class TransferWorkflowTest {
         result.getChargeResponseObj().getChargeId());
   }
 
+  /** Compare validate as a local activity against a regular activity */
+  @Test
+  public void testLocalValidateShortensHistory() {
+    testWorkflowRule
+        .getWorker()
+        .registerActivitiesImplementations(new AccountTransferActivitiesImpl());
+    testWorkflowRule.getTestEnvironment().start();
+
+    int regularEvents = runHappyPath("regular activity", testWorkflowRule.getTaskQueue(), false);
+    int localEvents = runHappyPath("local activity", testWorkflowRule.getTaskQueue(), true);
+
+    System.out.println(
+        "validate as local activity saves " + (regularEvents - localEvents) + " history events");
+    assertTrue(localEvents < regularEvents);
+  }
+
+  /** Run workflow and activity tasks on separate workers, as with WORKER_ROLE */
+  @Test
+  public void testActivitiesOnSeparateTaskQueue() {
+    String workflowTaskQueue = testWorkflowRule.getTaskQueue() + "-workflows";
+    String activityTaskQueue = testWorkflowRule.getTaskQueue() + "-activities";
+    Worker workflowWorker = testWorkflowRule.getTestEnvironment().newWorker(workflowTaskQueue);
+    workflowWorker.registerWorkflowImplementationFactory(
+        AccountTransferWorkflow.class,
+        () -> new AccountTransferWorkflowImpl(activityTaskQueue, ""));
+    Worker activityWorker = testWorkflowRule.getTestEnvironment().newWorker(activityTaskQueue);
+    activityWorker.registerActivitiesImplementations(new AccountTransferActivitiesImpl());
+    testWorkflowRule.getTestEnvironment().start();
+
+    // the workflow worker has no activities registered, so this only completes if they're routed
+    runHappyPath("activity on its own task queue", workflowTaskQueue, false);
+  }
+
+  // runs a happy path transfer, prints its latency and returns its history length
+  private int runHappyPath(String label, String taskQueue, boolean localValidate) {
+    WorkflowClient client = testWorkflowRule.getWorkflowClient();
+    AccountTransferWorkflow workflow =
+        client.newWorkflowStub(
+            AccountTransferWorkflow.class,
+            WorkflowOptions.newBuilder().setTaskQueue(taskQueue).build());
+    WorkflowParameterObj workflowParameterObj = new WorkflowParameterObj();
+    workflowParameterObj.setAmount(100);
+    workflowParameterObj.setScenario(ExecutionScenarioObj.HAPPY_PATH);
+    workflowParameterObj.setLocalValidate(localValidate);
+
+    long start = System.nanoTime();
+    workflow.transfer(workflowParameterObj);
+    long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    String workflowId = WorkflowStub.fromTyped(workflow).getExecution().getWorkflowId();
+    int events = client.fetchHistory(workflowId).getEvents().size();
+    System.out.println(
+        "validate as " + label + ": " + elapsedMillis + "ms, " + events + " history events");
+    return events;
+  }
+
   // Clean up test environment after tests are completed
   @After
   public void tearDown() {
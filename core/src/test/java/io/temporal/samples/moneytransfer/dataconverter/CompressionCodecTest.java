@@ -0,0 +1,84 @@
+package io.temporal.samples.moneytransfer.dataconverter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import io.temporal.api.common.v1.Payload;
+import io.temporal.api.common.v1.Payloads;
+import io.temporal.common.converter.CodecDataConverter;
+import io.temporal.common.converter.DataConverter;
+import io.temporal.common.converter.DefaultDataConverter;
+import io.temporal.common.converter.EncodingKeys;
+import io.temporal.payload.codec.PayloadCodecException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+import org.junit.Test;
+
+public class CompressionCodecTest {
+
+  private final CompressionCodec codec = new CompressionCodec(1024);
+
+  private static String newValue(int size) {
+    StringBuilder builder = new StringBuilder();
+    while (builder.length() < size) {
+      builder.append("{\"transferState\":\"running\"},");
+    }
+    return builder.toString();
+  }
+
+  private static Payload newPayload(int size) {
+    return DefaultDataConverter.newDefaultInstance().toPayload(newValue(size)).get();
+  }
+
+  /** Test that a payload inflating beyond the limit is rejected instead of allocated */
+  @Test(expected = PayloadCodecException.class)
+  public void testDecodeSizeLimit() {
+    Payload encoded = codec.encode(Collections.singletonList(newPayload(2 * 1024 * 1024))).get(0);
+
+    new CompressionCodec(1024, 1024 * 1024).decode(Collections.singletonList(encoded));
+  }
+
+  /** Test that large payloads are compressed and decode back to the original */
+  @Test
+  public void testRoundTrip() {
+    Payload payload = newPayload(64 * 1024);
+
+    Payload encoded = codec.encode(Collections.singletonList(payload)).get(0);
+    assertEquals(
+        CompressionCodec.METADATA_ENCODING,
+        encoded.getMetadataOrThrow(EncodingKeys.METADATA_ENCODING_KEY));
+    assertTrue(encoded.getSerializedSize() < payload.getSerializedSize());
+
+    assertEquals(payload, codec.decode(Collections.singletonList(encoded)).get(0));
+  }
+
+  /** Test that payloads below the threshold are passed through */
+  @Test
+  public void testSmallPayloadNotCompressed() {
+    Payload payload = newPayload(100);
+
+    assertSame(payload, codec.encode(Collections.singletonList(payload)).get(0));
+  }
+
+  /** Test compression chained ahead of encryption, as configured in TemporalClient */
+  @Test
+  public void testChainedWithCryptCodec() {
+    DataConverter dataConverter =
+        new CodecDataConverter(
+            DefaultDataConverter.newDefaultInstance(),
+            Arrays.asList(new CryptCodec(), codec),
+            true /* encode failure attributes */);
+    String value = newValue(64 * 1024);
+
+    Optional<Payloads> encoded = dataConverter.toPayloads(value);
+    Payload outer = encoded.get().getPayloads(0);
+    assertEquals(
+        CryptCodec.METADATA_ENCODING, outer.getMetadataOrThrow(EncodingKeys.METADATA_ENCODING_KEY));
+    // encrypted compressed data is far smaller than the plain value
+    assertTrue(outer.getData().size() < value.length() / 2);
+
+    assertEquals(value, dataConverter.fromPayloads(0, encoded, String.class, String.class));
+  }
+}
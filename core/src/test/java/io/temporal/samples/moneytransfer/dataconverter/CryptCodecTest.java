@@ -0,0 +1,134 @@
+package io.temporal.samples.moneytransfer.dataconverter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import io.temporal.api.common.v1.Payload;
+import io.temporal.common.converter.DefaultDataConverter;
+import io.temporal.common.converter.EncodingKeys;
+import io.temporal.samples.moneytransfer.dataclasses.ExecutionScenarioObj;
+import io.temporal.samples.moneytransfer.dataclasses.WorkflowParameterObj;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import org.junit.Test;
+
+public class CryptCodecTest {
+
+  private final CryptCodec codec = new CryptCodec();
+
+  private static Payload newPayload(int amount) {
+    return DefaultDataConverter.newDefaultInstance()
+        .toPayload(new WorkflowParameterObj(amount, ExecutionScenarioObj.HAPPY_PATH))
+        .get();
+  }
+
+  /** Test that encoded payloads are encrypted and decode back to the original */
+  @Test
+  public void testRoundTrip() {
+    Payload payload = newPayload(100);
+
+    List<Payload> encoded = codec.encode(Collections.singletonList(payload));
+    assertEquals(
+        CryptCodec.METADATA_ENCODING,
+        encoded.get(0).getMetadataOrThrow(EncodingKeys.METADATA_ENCODING_KEY));
+    assertNotEquals(payload.getData(), encoded.get(0).getData());
+
+    List<Payload> decoded = codec.decode(encoded);
+    assertEquals(payload, decoded.get(0));
+  }
+
+  /** Test that the same payload never encrypts to the same bytes */
+  @Test
+  public void testUniqueNonce() {
+    Payload payload = newPayload(100);
+
+    Payload first = codec.encode(Collections.singletonList(payload)).get(0);
+    Payload second = codec.encode(Collections.singletonList(payload)).get(0);
+
+    assertNotEquals(first.getData(), second.getData());
+  }
+
+  /** Test that payloads which were not encrypted are passed through */
+  @Test
+  public void testDecodeUnencrypted() {
+    Payload payload = newPayload(100);
+
+    assertEquals(payload, codec.decode(Collections.singletonList(payload)).get(0));
+  }
+
+  /** Test that payloads written before a key rotation still decrypt, resolving each key once */
+  @Test
+  public void testKeyRotation() {
+    RotatingKeyProvider keyProvider = new RotatingKeyProvider();
+    CryptCodec rotatingCodec = new CryptCodec(new CachingKeyProvider(keyProvider, 10));
+
+    keyProvider.currentKeyId = "key-1";
+    List<Payload> oldPayloads = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      oldPayloads.add(rotatingCodec.encode(Collections.singletonList(newPayload(i))).get(0));
+    }
+
+    keyProvider.currentKeyId = "key-2";
+    Payload newEncoded = rotatingCodec.encode(Collections.singletonList(newPayload(10))).get(0);
+
+    List<Payload> decoded = rotatingCodec.decode(oldPayloads);
+    for (int i = 0; i < 10; i++) {
+      assertEquals(newPayload(i), decoded.get(i));
+    }
+    assertEquals(
+        newPayload(10), rotatingCodec.decode(Collections.singletonList(newEncoded)).get(0));
+    assertEquals(2, keyProvider.lookups.get());
+  }
+
+  /** Test that the shared codec can be used from many threads at once */
+  @Test
+  public void testConcurrentRoundTrip() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        int thread = i;
+        futures.add(
+            executor.submit(
+                () -> {
+                  for (int j = 0; j < 500; j++) {
+                    Payload payload = newPayload(thread * 1000 + j);
+                    List<Payload> encoded = codec.encode(Collections.singletonList(payload));
+                    assertEquals(payload, codec.decode(encoded).get(0));
+                  }
+                }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static class RotatingKeyProvider implements KeyProvider {
+    private volatile String currentKeyId;
+    private final AtomicInteger lookups = new AtomicInteger();
+
+    @Override
+    public String getCurrentKeyId() {
+      return currentKeyId;
+    }
+
+    @Override
+    public SecretKey getKey(String keyId) {
+      lookups.incrementAndGet();
+      byte[] key = new byte[32];
+      Arrays.fill(key, (byte) keyId.hashCode());
+      return new SecretKeySpec(key, "AES");
+    }
+  }
+}
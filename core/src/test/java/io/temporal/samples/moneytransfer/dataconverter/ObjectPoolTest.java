@@ -0,0 +1,30 @@
+package io.temporal.samples.moneytransfer.dataconverter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class ObjectPoolTest {
+
+  /** Test that released objects are reused and objects beyond the capacity are discarded */
+  @Test
+  public void testReuseAndDiscard() {
+    List<Object> discarded = new ArrayList<>();
+    ObjectPool<Object> pool = new ObjectPool<>(1, Object::new, discarded::add);
+
+    Object first = pool.borrow();
+    Object second = pool.borrow();
+    assertNotSame(first, second);
+
+    pool.release(first);
+    pool.release(second);
+    assertEquals(1, discarded.size());
+    assertSame(second, discarded.get(0));
+
+    assertSame(first, pool.borrow());
+  }
+}